@@ -0,0 +1,23 @@
+#!/usr/bin/env bash
+# Compares two JMH result files (resultFormat JSON) benchmark by benchmark and fails when one
+# that is in both got slower by more than the given ratio.
+# Usage: benchmarks/compare-results.sh base.json head.json [max ratio, default 1.05]
+set -euo pipefail
+
+limit=${3:-1.05}
+comparison=$(mktemp)
+jq -r --slurpfile base "$1" --argjson limit "$limit" '
+    def key: .benchmark + "(" + ((.params // {}) | to_entries | map(.key + "=" + .value) | join(", ")) + ")";
+    ($base[0] | map({key: key, value: .primaryMetric.score}) | from_entries) as $before
+    | .[]
+    | key as $k
+    | select($before[$k] != null)
+    | (.primaryMetric.score / $before[$k]) as $ratio
+    | "\($k): \($before[$k]) -> \(.primaryMetric.score) \(.primaryMetric.scoreUnit), ratio \($ratio)"
+      + (if $ratio > $limit then "  SLOWER" else "" end)
+' "$2" | tee "$comparison"
+
+if grep -q "SLOWER" "$comparison"; then
+    echo "Benchmarks got slower than the allowed ratio of $limit"
+    exit 1
+fi
@@ -0,0 +1,110 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Function;
+
+/**
+ * The operations the benchmarks measure. JMH only accepts benchmark classes in a named
+ * package, and classes in a named package cannot refer to the unnamed package this
+ * project lives in, so the benchmarks reach these through java.util.function.Function.
+ * @see benchmarks.Targets
+ */
+public class BenchmarkTargets {
+
+    // Writes a generated program to a temporary file and returns the file name
+    public static String writeProgram(int statements, int variables, int expressionLength, String operators) throws IOException {
+        Path file = Files.createTempFile("bench-program", ".txt");
+        file.toFile().deleteOnExit();
+        new ProgramGenerator(42, statements, variables, expressionLength, operators).writeTo(file);
+        return file.toString();
+    }
+
+    // parseProgram() prints its verdict and the IdTable; keep that out of the measurements
+    public static void silenceConsole() {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    // file name -> ArrayList<Token>
+    public static Function<Object, Object> getAllTokens() {
+        return fileName -> new Lexer((String) fileName).getAllTokens();
+    }
+
+    // file name -> number of tokens, pulling them one at a time with getNextToken()
+    public static Function<Object, Object> getNextToken() {
+        return fileName -> {
+            Lexer lexer = new Lexer((String) fileName);
+            int count = 0;
+            while (lexer.getNextToken() != null) {
+                count++;
+            }
+            return count;
+        };
+    }
+
+    // file name -> TokenBuffer
+    public static Function<Object, Object> tokenize() {
+        return fileName -> new Lexer((String) fileName).tokenize();
+    }
+
+    // file name -> number of tokens, scanned through the streaming window
+    public static Function<Object, Object> scanStreaming() {
+        return fileName -> {
+            Lexer lexer = new Lexer((String) fileName, true);
+            int count = 0;
+            while (lexer.scan() != Lexer.EOFKIND) {
+                count++;
+            }
+            return count;
+        };
+    }
+
+    // TokenBuffer -> Parser, ready for parseProgram()
+    public static Function<Object, Object> newParser() {
+        return tokens -> new Parser((TokenBuffer) tokens, 0);  // Parsed only, so no memory is needed
+    }
+
+    // Parser -> Boolean result of parseProgram()
+    public static Function<Object, Object> parseProgram() {
+        return parser -> ((Parser) parser).parseProgram();
+    }
+
+    // file name -> ByteCodeInterpreter holding the compiled program
+    public static Function<Object, Object> compile() {
+        return fileName -> {
+            Parser parser = new Parser(new Lexer((String) fileName));
+            if (!parser.parseProgram()) {
+                throw new IllegalStateException("Generated program does not parse");
+            }
+            return parser.getByteCodeInterpreter();
+        };
+    }
+
+    // ByteCodeInterpreter -> the same interpreter after run()
+    public static Function<Object, Object> run() {
+        return interpreter -> {
+            ((ByteCodeInterpreter) interpreter).run();
+            return interpreter;
+        };
+    }
+
+    // ByteCodeInterpreter -> the same interpreter, compiled after jitThreshold runs (negative never)
+    public static Function<Object, Object> jitThreshold(int jitThreshold) {
+        return interpreter -> {
+            ((ByteCodeInterpreter) interpreter).setJitThreshold(jitThreshold);
+            return interpreter;
+        };
+    }
+
+    // file name -> ByteCodeInterpreter after lexing, parsing and running, in memory or streaming
+    public static Function<Object, Object> lexParseRun(boolean streaming) {
+        return fileName -> {
+            Parser parser = new Parser(new Lexer((String) fileName, streaming));
+            if (parser.parseProgram()) {
+                parser.runProgram();
+            }
+            return parser.getByteCodeInterpreter();
+        };
+    }
+}
@@ -0,0 +1,49 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * ByteCodeInterpreter.run() on a program compiled once in setup. A straight-line program
+ * leaves the same memory behind on every run, so one interpreter serves every invocation.
+ * With jit set, the program is compiled to a JVM class on the first run; warmup covers that.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterpreterBenchmark {
+
+    @Param({"false", "true"})
+    public boolean jit;
+
+    private Object interpreter;
+    private Function<Object, Object> run;
+
+    @Setup
+    public void setup(ProgramShape shape) {
+        Targets.silenceConsole();
+        interpreter = Targets.get("compile").apply(shape.write());
+        Targets.get("jitThreshold", jit ? 0 : -1).apply(interpreter);
+        run = Targets.get("run");
+    }
+
+    @Benchmark
+    public Object run() {
+        return run.apply(interpreter);
+    }
+}
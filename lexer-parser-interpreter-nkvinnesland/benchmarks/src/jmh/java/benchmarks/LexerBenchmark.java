@@ -0,0 +1,62 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Lexing a generated program from its file: the Token API, the TokenBuffer and the streaming scan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LexerBenchmark {
+
+    private String fileName;
+    private Function<Object, Object> getAllTokens;
+    private Function<Object, Object> getNextToken;
+    private Function<Object, Object> tokenize;
+    private Function<Object, Object> scanStreaming;
+
+    @Setup
+    public void setup(ProgramShape shape) {
+        fileName = shape.write();
+        getAllTokens = Targets.get("getAllTokens");
+        getNextToken = Targets.get("getNextToken");
+        tokenize = Targets.get("tokenize");
+        scanStreaming = Targets.get("scanStreaming");
+    }
+
+    @Benchmark
+    public Object getAllTokens() {
+        return getAllTokens.apply(fileName);
+    }
+
+    @Benchmark
+    public Object getNextToken() {
+        return getNextToken.apply(fileName);
+    }
+
+    @Benchmark
+    public Object tokenize() {
+        return tokenize.apply(fileName);
+    }
+
+    @Benchmark
+    public Object scanStreaming() {
+        return scanStreaming.apply(fileName);
+    }
+}
@@ -0,0 +1,50 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Lex, parse and run with metrics off, the default, and on. Metrics.ENABLED is read once per JVM,
+ * so each variant gets its own fork. CI compares metricsOn against metricsOff directly, which
+ * bounds what the instrumentation costs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MetricsBenchmark {
+
+    private String fileName;
+    private Function<Object, Object> lexParseRun;
+
+    @Setup
+    public void setup(ProgramShape shape) {
+        Targets.silenceConsole();
+        fileName = shape.write();
+        lexParseRun = Targets.get("lexParseRun", false);
+    }
+
+    @Benchmark
+    @Fork(1)
+    public Object metricsOff() {
+        return lexParseRun.apply(fileName);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dinterpreter.metrics=true")
+    public Object metricsOn() {
+        return lexParseRun.apply(fileName);
+    }
+}
@@ -0,0 +1,52 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Parser.parseProgram() on tokens that were scanned ahead of time, so lexing is not part of the number.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    private Object tokens;
+    private Object parser;
+    private Function<Object, Object> newParser;
+    private Function<Object, Object> parseProgram;
+
+    @Setup(Level.Trial)
+    public void setup(ProgramShape shape) {
+        Targets.silenceConsole();
+        tokens = Targets.get("tokenize").apply(shape.write());
+        newParser = Targets.get("newParser");
+        parseProgram = Targets.get("parseProgram");
+    }
+
+    // A parser walks its tokens only once
+    @Setup(Level.Invocation)
+    public void newParser() {
+        parser = newParser.apply(tokens);
+    }
+
+    @Benchmark
+    public Object parseProgram() {
+        return parseProgram.apply(parser);
+    }
+}
@@ -0,0 +1,30 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Parameters of the generated program every benchmark runs on.
+ * Override from the command line, e.g. -p statements=1000000 -p operators=+
+ */
+@State(Scope.Benchmark)
+public class ProgramShape {
+
+    @Param({"1000", "100000"})
+    public int statements;
+
+    @Param({"100"})
+    public int variables;
+
+    @Param({"4"})
+    public int expressionLength;
+
+    @Param({"+", "+-*/"})
+    public String operators;
+
+    // Writes the program to a temporary file and returns its name
+    String write() {
+        return Targets.writeProgram(statements, variables, expressionLength, operators);
+    }
+}
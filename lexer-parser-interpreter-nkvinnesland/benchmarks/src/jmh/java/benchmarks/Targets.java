@@ -0,0 +1,45 @@
+package benchmarks;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.function.Function;
+
+/**
+ * Looks up the operations in the unnamed-package BenchmarkTargets class by reflection.
+ * This only happens during setup; the measured code calls the returned functions directly.
+ */
+final class Targets {
+
+    private static final String TARGETS = "BenchmarkTargets";
+
+    private Targets() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static Function<Object, Object> get(String name, Object... args) {
+        return (Function<Object, Object>) call(name, args);
+    }
+
+    static String writeProgram(int statements, int variables, int expressionLength, String operators) {
+        return (String) call("writeProgram", statements, variables, expressionLength, operators);
+    }
+
+    static void silenceConsole() {
+        call("silenceConsole");
+    }
+
+    private static Object call(String name, Object... args) {
+        try {
+            Class<?> targets = Class.forName(TARGETS);
+            for (java.lang.reflect.Method method : targets.getMethods()) {
+                if (method.getName().equals(name) && method.getParameterCount() == args.length) {
+                    return method.invoke(null, args);
+                }
+            }
+            throw new IllegalArgumentException("No benchmark target " + name);
+        } catch (ClassNotFoundException | IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,267 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Runs one program over many rows of input at once. Each memory address becomes a column and
+ * every command is applied to a whole block of rows in a plain loop over int arrays, which
+ * HotSpot compiles to SIMD instructions where the CPU has them. Each row gives the same result
+ * as running the program in a fresh ByteCodeInterpreter whose inputs hold the row's values.
+ * Inputs are declared with IdTable.declareInput before parsing and bound to columns with bind().
+ * @see ByteCodeInterpreter
+ * @see IdTable
+ */
+public class BatchExecutor {
+
+    // Rows processed together; a block of every column stays in the CPU cache
+    public static final int BLOCK_SIZE = 1024;
+
+    private final int[] code;
+    private final int memorySize;
+    private final IdTable idTable;
+    private final int maxDepth;
+
+    // Addresses a row may read before storing them, so they start as the input value or 0
+    private final boolean[] readBeforeStore;
+
+    private final HashMap<String, int[]> inputColumns = new HashMap<>();
+    private final HashMap<String, int[]> outputColumns = new HashMap<>();
+
+    /**
+     * @param program interpreter holding the generated code and sized memory
+     * @param idTable identifiers of the program, with its inputs and outputs
+     * @throws BytecodeVerifier.VerificationException if the code does not verify
+     */
+    public BatchExecutor(ByteCodeInterpreter program, IdTable idTable) {
+        this.code = program.getCode();
+        this.memorySize = program.getMemorySize();
+        this.idTable = idTable;
+        List<VerificationError> errors = BytecodeVerifier.verify(code, code.length, memorySize);
+        if (!errors.isEmpty()) {
+            throw new BytecodeVerifier.VerificationException(errors);
+        }
+
+        int depth = 0;
+        int deepest = 0;
+        boolean[] stored = new boolean[memorySize];
+        readBeforeStore = new boolean[memorySize];
+        for (int i = 0; i < code.length; i += 2) {
+            int command = code[i];
+            int operand = code[i + 1];
+            if (command == ByteCodeInterpreter.STORE) {
+                stored[operand] = true;
+            } else if (command == ByteCodeInterpreter.PUSH) {
+                deepest = Math.max(deepest, ++depth);
+            } else if (command >= ByteCodeInterpreter.POPADD) {
+                depth--;
+            } else if (isMemoryCommand(command) && !stored[operand]) {
+                readBeforeStore[operand] = true;
+            }
+        }
+        for (int address = 0; address < memorySize; address++) {
+            if (!stored[address]) {
+                readBeforeStore[address] = true;  // Never stored, so its output is its initial value
+            }
+        }
+        maxDepth = deepest;
+    }
+
+    // Binds an identifier to a column of values, one per row
+    public void bind(String id, int[] column) {
+        if (idTable.getAddress(id) == -1) {
+            throw new IllegalArgumentException("Identifier '" + id + "' is not defined");
+        }
+        inputColumns.put(id, column);
+    }
+
+    /**
+     * Runs the program for the first rows rows of the bound columns
+     * @param rows number of rows
+     */
+    public void execute(int rows) {
+        for (String id : idTable.getIdentifiers()) {
+            int[] column = inputColumns.get(id);
+            if (column == null && idTable.isInput(id)) {
+                throw new IllegalStateException("Input '" + id + "' is not bound");
+            }
+            if (column != null && column.length < rows) {
+                throw new IllegalArgumentException("Column '" + id + "' has fewer than " + rows + " rows");
+            }
+        }
+
+        // Outputs are the marked identifiers, or every identifier when none are marked
+        String[] outputs = Arrays.stream(idTable.getIdentifiers())
+                .filter(id -> !idTable.hasOutputs() || idTable.isOutput(id))
+                .toArray(String[]::new);
+        int[] outputAddresses = new int[outputs.length];
+        outputColumns.clear();
+        for (int k = 0; k < outputs.length; k++) {
+            outputAddresses[k] = idTable.getOutputAddress(outputs[k]);
+            outputColumns.put(outputs[k], new int[rows]);
+        }
+        int[][] inputs = new int[memorySize][];
+        for (String id : inputColumns.keySet()) {
+            inputs[idTable.getAddress(id)] = inputColumns.get(id);
+        }
+
+        int[][] memory = new int[memorySize][BLOCK_SIZE];
+        int[][] stack = new int[maxDepth][BLOCK_SIZE];
+        int[] accumulator = new int[BLOCK_SIZE];
+        for (int base = 0; base < rows; base += BLOCK_SIZE) {
+            int n = Math.min(BLOCK_SIZE, rows - base);
+            for (int address = 0; address < memorySize; address++) {
+                if (inputs[address] != null) {
+                    System.arraycopy(inputs[address], base, memory[address], 0, n);
+                } else if (readBeforeStore[address]) {
+                    Arrays.fill(memory[address], 0, n, 0);
+                }
+            }
+            runBlock(memory, stack, accumulator, n);
+            for (int k = 0; k < outputs.length; k++) {
+                System.arraycopy(memory[outputAddresses[k]], 0, outputColumns.get(outputs[k]), base, n);
+            }
+        }
+    }
+
+    /**
+     * Values of an output after execute()
+     * @param id an output identifier, or any identifier when no outputs are marked
+     * @return one value per row
+     */
+    public int[] getColumn(String id) {
+        int[] column = outputColumns.get(id);
+        if (column == null) {
+            throw new IllegalArgumentException("Identifier '" + id + "' is not an output");
+        }
+        return column;
+    }
+
+    // Runs every command over n rows. The accumulator of a row is 0 at its start and after each STORE;
+    // while that is known, the column is not cleared and the next LOAD or LOADI simply overwrites it.
+    private void runBlock(int[][] memory, int[][] stack, int[] acc, int n) {
+        boolean accZero = true;
+        int depth = 0;
+        for (int i = 0; i < code.length; i += 2) {
+            int command = code[i];
+            int operand = code[i + 1];
+            if (accZero && command != ByteCodeInterpreter.LOAD && command != ByteCodeInterpreter.LOADI) {
+                Arrays.fill(acc, 0, n, 0);
+            }
+            switch (command) {
+                case ByteCodeInterpreter.LOAD: {
+                    int[] m = memory[operand];
+                    if (accZero) {
+                        System.arraycopy(m, 0, acc, 0, n);
+                    } else {
+                        for (int r = 0; r < n; r++) {
+                            acc[r] += m[r];
+                        }
+                    }
+                    break;
+                }
+                case ByteCodeInterpreter.LOADI:
+                    if (accZero) {
+                        Arrays.fill(acc, 0, n, operand);
+                    } else {
+                        for (int r = 0; r < n; r++) {
+                            acc[r] += operand;
+                        }
+                    }
+                    break;
+                case ByteCodeInterpreter.STORE:
+                    System.arraycopy(acc, 0, memory[operand], 0, n);
+                    accZero = true;
+                    continue;
+                case ByteCodeInterpreter.SUB: {
+                    int[] m = memory[operand];
+                    for (int r = 0; r < n; r++) {
+                        acc[r] -= m[r];
+                    }
+                    break;
+                }
+                case ByteCodeInterpreter.SUBI:
+                    for (int r = 0; r < n; r++) {
+                        acc[r] -= operand;
+                    }
+                    break;
+                case ByteCodeInterpreter.MULT: {
+                    int[] m = memory[operand];
+                    for (int r = 0; r < n; r++) {
+                        acc[r] *= m[r];
+                    }
+                    break;
+                }
+                case ByteCodeInterpreter.MULTI:
+                    for (int r = 0; r < n; r++) {
+                        acc[r] *= operand;
+                    }
+                    break;
+                case ByteCodeInterpreter.DIV:
+                    divide(acc, acc, memory[operand], n);
+                    break;
+                case ByteCodeInterpreter.DIVI:
+                    if (operand == 0) {
+                        for (int r = 0; r < n; r++) {
+                            acc[r] = ByteCodeInterpreter.divide(acc[r], 0);  // Reports the error for every row
+                        }
+                    } else {
+                        for (int r = 0; r < n; r++) {
+                            acc[r] /= operand;
+                        }
+                    }
+                    break;
+                case ByteCodeInterpreter.PUSH:
+                    System.arraycopy(acc, 0, stack[depth++], 0, n);
+                    accZero = true;
+                    continue;
+                case ByteCodeInterpreter.POPADD: {
+                    int[] left = stack[--depth];
+                    for (int r = 0; r < n; r++) {
+                        acc[r] = left[r] + acc[r];
+                    }
+                    break;
+                }
+                case ByteCodeInterpreter.POPSUB: {
+                    int[] left = stack[--depth];
+                    for (int r = 0; r < n; r++) {
+                        acc[r] = left[r] - acc[r];
+                    }
+                    break;
+                }
+                case ByteCodeInterpreter.POPMULT: {
+                    int[] left = stack[--depth];
+                    for (int r = 0; r < n; r++) {
+                        acc[r] = left[r] * acc[r];
+                    }
+                    break;
+                }
+                default:  // POPDIV; the verifier rejected anything else
+                    divide(acc, stack[--depth], acc, n);
+                    break;
+            }
+            accZero = false;
+        }
+    }
+
+    // result[r] = left[r] / right[r], going through ByteCodeInterpreter.divide only when some divisor is 0
+    private static void divide(int[] result, int[] left, int[] right, int n) {
+        boolean zeroDivisor = false;
+        for (int r = 0; r < n; r++) {
+            zeroDivisor |= right[r] == 0;
+        }
+        if (zeroDivisor) {
+            for (int r = 0; r < n; r++) {
+                result[r] = ByteCodeInterpreter.divide(left[r], right[r]);
+            }
+        } else {
+            for (int r = 0; r < n; r++) {
+                result[r] = left[r] / right[r];
+            }
+        }
+    }
+
+    private static boolean isMemoryCommand(int command) {
+        return command == ByteCodeInterpreter.LOAD || command == ByteCodeInterpreter.SUB
+                || command == ByteCodeInterpreter.MULT || command == ByteCodeInterpreter.DIV;
+    }
+}
@@ -0,0 +1,237 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compiles and runs many script files on a work-stealing fork/join pool, and writes one JSON line
+ * per script: whether it is valid, its diagnostics (kind, line, identifier and message) and the
+ * final value of every identifier. Nothing is printed per script; errors only go to the output.
+ * Scripts are independent, so the throughput grows with the number of threads.
+ *   java BatchRunner scripts/ results.jsonl [threads]
+ *   java BatchRunner manifest.txt results.jsonl [threads]
+ * A manifest lists one script path per line, relative to the manifest; blank lines and lines
+ * starting with # are skipped. A directory is searched for .txt files, recursively.
+ * @see Diagnostic
+ */
+public class BatchRunner implements AutoCloseable {
+
+    // Scripts a task handles without splitting further
+    private static final int SCRIPTS_PER_TASK = 8;
+
+    private final ForkJoinPool pool;
+    private final AtomicLong valid = new AtomicLong();
+    private final AtomicLong invalid = new AtomicLong();
+    private final AtomicLong runTimeErrors = new AtomicLong();
+
+    public BatchRunner() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public BatchRunner(int threads) {
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * The scripts of a directory, sorted, or the scripts a manifest file lists
+     * @param directoryOrManifest a directory or a manifest file
+     * @return the script paths
+     * @throws IOException if the directory or the manifest cannot be read
+     */
+    public static List<Path> listScripts(Path directoryOrManifest) throws IOException {
+        if (Files.isDirectory(directoryOrManifest)) {
+            try (Stream<Path> files = Files.walk(directoryOrManifest)) {
+                return files.filter(Files::isRegularFile)
+                        .filter(file -> file.getFileName().toString().endsWith(".txt"))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+        }
+        Path base = directoryOrManifest.toAbsolutePath().getParent();
+        List<Path> scripts = new ArrayList<>();
+        for (String line : Files.readAllLines(directoryOrManifest, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                scripts.add(base.resolve(line));
+            }
+        }
+        return scripts;
+    }
+
+    /**
+     * Compiles and runs every script and writes its JSON line to out, in the order they finish
+     * @param scripts the script files
+     * @param out the JSON-lines output; lines are written whole, one script at a time
+     */
+    public void run(List<Path> scripts, Writer out) {
+        pool.invoke(new Scripts(scripts, 0, scripts.size(), out));
+    }
+
+    // Splits the scripts in halves until a task has SCRIPTS_PER_TASK; idle threads steal the other halves
+    private class Scripts extends RecursiveAction {
+        private final List<Path> scripts;
+        private final int start, end;
+        private final Writer out;
+
+        Scripts(List<Path> scripts, int start, int end, Writer out) {
+            this.scripts = scripts;
+            this.start = start;
+            this.end = end;
+            this.out = out;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > SCRIPTS_PER_TASK) {
+                int middle = (start + end) >>> 1;
+                invokeAll(new Scripts(scripts, start, middle, out), new Scripts(scripts, middle, end, out));
+                return;
+            }
+            for (int i = start; i < end; i++) {
+                String line = runScript(scripts.get(i));
+                try {
+                    synchronized (out) {
+                        out.write(line);
+                        out.write('\n');
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compiles and runs one script
+     * @param script the script file
+     * @return its result as one JSON object, without a line break
+     */
+    public String runScript(Path script) {
+        long start = System.nanoTime();
+        List<Diagnostic> diagnostics = new ArrayList<>();
+        Program program = null;
+        try {
+            String source = new String(Files.readAllBytes(script), StandardCharsets.UTF_8);
+            Parser parser = new Parser(Lexer.fromSource(source));
+            parser.setQuiet(true);
+            if (parser.parseProgram()) {
+                program = Program.of(parser.getByteCodeInterpreter(), parser.getIdTable());
+            }
+            diagnostics.addAll(parser.getDiagnostics());
+        } catch (IOException e) {
+            diagnostics.add(new Diagnostic(Diagnostic.Kind.IO_ERROR, -1, null, "Error: Cannot read " + script + ": " + e.getMessage()));
+        }
+
+        ExecutionContext context = null;
+        if (program != null) {
+            context = program.newContext();
+            context.setQuiet(true);
+            program.execute(context);
+            diagnostics.addAll(context.getDiagnostics());
+            valid.incrementAndGet();
+            if (!context.getDiagnostics().isEmpty()) {
+                runTimeErrors.incrementAndGet();
+            }
+        } else {
+            invalid.incrementAndGet();
+        }
+
+        StringBuilder json = new StringBuilder("{\"script\":");
+        quote(json, script.toString());
+        json.append(",\"valid\":").append(program != null);
+        json.append(",\"diagnostics\":[");
+        for (int i = 0; i < diagnostics.size(); i++) {
+            Diagnostic diagnostic = diagnostics.get(i);
+            json.append(i == 0 ? "{" : ",{");
+            json.append("\"kind\":\"").append(diagnostic.getKind()).append('"');
+            json.append(",\"line\":").append(diagnostic.getLine());
+            json.append(",\"identifier\":");
+            quote(json, diagnostic.getIdentifier());
+            json.append(",\"message\":");
+            quote(json, diagnostic.getMessage());
+            json.append('}');
+        }
+        json.append(']');
+        if (context != null) {
+            json.append(",\"memory\":{");
+            String[] identifiers = program.getIdentifiers();
+            for (int address = 0; address < identifiers.length; address++) {
+                if (address > 0) {
+                    json.append(',');
+                }
+                quote(json, identifiers[address]);
+                json.append(':').append(context.getMemoryValue(address));
+            }
+            json.append('}');
+        }
+        json.append(",\"nanos\":").append(System.nanoTime() - start).append('}');
+        return json.toString();
+    }
+
+    // Appends s as a JSON string, or null
+    private static void quote(StringBuilder json, String s) {
+        if (s == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    // Scripts that compiled, whether or not they had run-time errors
+    public long getValidCount() {
+        return valid.get();
+    }
+
+    public long getInvalidCount() {
+        return invalid.get();
+    }
+
+    // Valid scripts that reported at least one run-time error
+    public long getRunTimeErrorCount() {
+        return runTimeErrors.get();
+    }
+
+    // Stops the pool's threads
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: BatchRunner <directory or manifest> <output.jsonl> [threads]");
+            return;
+        }
+        List<Path> scripts = listScripts(Paths.get(args[0]));
+        BatchRunner runner = args.length > 2 ? new BatchRunner(Integer.parseInt(args[2])) : new BatchRunner();
+        long start = System.nanoTime();
+        try (runner; BufferedWriter out = Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+            runner.run(scripts, out);
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("Ran " + scripts.size() + " scripts in " + millis + " ms: " + runner.getValidCount() + " valid ("
+                + runner.getRunTimeErrorCount() + " with run-time errors), " + runner.getInvalidCount() + " invalid");
+    }
+}
@@ -1,18 +1,50 @@
 import java.util.ArrayList;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class ByteCodeInterpreter {
 
-    // List to store the bytecode instructions and operands
-    private ArrayList<Integer> bytecode;
+    // Code segment: command/operand pairs stored flat in a growable primitive array
+    private int[] code;
+
+    // Number of ints of code actually generated
+    private int codeLength;
 
-    // List to represent the memory of the interpreter
-    private ArrayList<Integer> memory;
+    // Primitive array representing the memory of the interpreter
+    private int[] memory;
 
-    // Constants representing bytecode commands
+    // Constants representing bytecode commands. LOAD and LOADI add to the accumulator,
+    // the other arithmetic commands combine it with a memory value or an immediate.
     public static final int LOAD = 0;
     public static final int LOADI = 1;
     public static final int STORE = 2;
+    public static final int SUB = 3;
+    public static final int SUBI = 4;
+    public static final int MULT = 5;
+    public static final int MULTI = 6;
+    public static final int DIV = 7;
+    public static final int DIVI = 8;
+
+    // Commands for subexpressions: PUSH saves the accumulator on the operand stack and clears it,
+    // the POP commands combine the saved value (left) with the accumulator (right). Their operand is unused.
+    public static final int PUSH = 9;
+    public static final int POPADD = 10;
+    public static final int POPSUB = 11;
+    public static final int POPMULT = 12;
+    public static final int POPDIV = 13;
+
+    // Names of the commands 0 to POPDIV, for dumps and metrics
+    private static final String[] COMMAND_NAMES = {"LOAD", "LOADI", "STORE", "SUB", "SUBI", "MULT", "MULTI", "DIV", "DIVI",
+            "PUSH", "POPADD", "POPSUB", "POPMULT", "POPDIV"};
+
+    // Run-time error messages, the same in every tier
+    static final String INVALID_COMMAND_MESSAGE = "Invalid command!";
+    static final String ADDRESS_OUT_OF_BOUNDS_MESSAGE = "Run-time error: Address out of bounds";
+    static final String EMPTY_STACK_MESSAGE = "Run-time error: Operand stack is empty";
+    static final String DIVISION_BY_ZERO_MESSAGE = "Run-time error: Division by zero";
+
+    // Initial capacity of the code segment, in ints
+    private static final int INITIAL_CODE_CAPACITY = 64;
 
     // The accumulator stores intermediate results during execution
     private int accumulator;
@@ -20,41 +52,206 @@ public class ByteCodeInterpreter {
     // The size of the memory
     private int memorySize;
 
+    // Operand stack for PUSH and the POP commands; only as deep as the nesting of subexpressions
+    private int[] stack = new int[16];
+    private int stackSize = 0;
+
+    // Second tier: after jitThreshold interpreted runs the code is compiled to a JVM class by JitCompiler.
+    // A negative threshold keeps every run in the interpreter. Changing the code or the memory drops the compiled class.
+    public static final int DEFAULT_JIT_THRESHOLD = Integer.getInteger("interpreter.jitThreshold", 1000);
+    private int jitThreshold = DEFAULT_JIT_THRESHOLD;
+    private int interpretedRuns = 0;
+    private JitCompiler.CompiledProgram compiled;
+    private boolean jitFailed = false;  // The code cannot be compiled; do not try again until it changes
+
+    // The interpreter runs a pre-decoded form of the code, built on the first run after the code or the
+    // memory changed. Each instruction is its opcode followed by its operands. Statements that only
+    // store a constant or a variable plus a constant are fused into one superinstruction, so that
+    // they cost a single dispatch. Handlers can be chosen with -Dinterpreter.dispatch=closures.
+    private static final int LOADI_STORE = 14;       // value, address
+    private static final int LOAD_LOADI_STORE = 15;  // source address, value, address
+    private static final int INVALID = 16;           // no operands
+    private int[] decoded;
+    private int decodedLength;
+    private int decodedInstructions;
+    private Runnable[] steps;
+    private boolean closureDispatch = "closures".equals(System.getProperty("interpreter.dispatch"));
+
+    // Result of BytecodeVerifier for the decoded code. Verified code runs without per-instruction checks.
+    private List<VerificationError> verificationErrors;
+
+    // Statement dependencies for runParallel(), built on its first call after the code or the memory
+    // changed. Null once built means the code is better run sequentially.
+    private DependencyGraph graph;
+    private boolean graphBuilt = false;
+
+    // Instructions per opcode, built for the metrics on the first run after the code changed
+    private int[] opcodeHistogram;
+
+    // Source line of each instruction, filled by the Parser through markLine()
+    private LineTable lineTable = new LineTable();
+
+    // When set, run() interprets the original code and records every instruction, see runRecorded()
+    private ExecutionRecorder recorder;
+
     // Constructor to initialize the interpreter with a given memory size
     public ByteCodeInterpreter(int memSize) {
         this.memorySize = memSize;
-        this.bytecode = new ArrayList<>();
-        this.memory = new ArrayList<>();
-
-        // Initialize memory to 0 for each memory location
-        for (int i = 0; i < memSize; i++) {
-            memory.add(0);
-        }
+        this.code = new int[INITIAL_CODE_CAPACITY];
+        this.codeLength = 0;
+        this.memory = new int[memSize];  // Memory starts out as all zeros
         this.accumulator = 0; // Initialize accumulator to 0
     }
 
-    // Method to generate bytecode by adding a command and its operand to the list
+    // Replaces the memory with a fresh, zeroed one of the given size, e.g. the size of the IdTable
+    public void resizeMemory(int memSize) {
+        this.memorySize = memSize;
+        this.memory = new int[memSize];
+        codeChanged();
+    }
+
+    // Method to generate bytecode by adding a command and its operand to the code segment
     public void generate(int command, int operand) {
-        bytecode.add(command);
-        bytecode.add(operand);
+        if (codeLength + 2 > code.length) {
+            code = Arrays.copyOf(code, code.length * 2);
+        }
+        code[codeLength] = command;
+        code[codeLength + 1] = operand;
+        codeLength += 2;
+        codeChanged();
+    }
+
+    // Replaces the generated code, e.g. with the output of BytecodeOptimizer
+    public void replaceCode(int[] newCode, int newLength) {
+        this.code = Arrays.copyOf(newCode, Math.max(newLength, INITIAL_CODE_CAPACITY));
+        this.codeLength = newLength;
+        this.lineTable = new LineTable();  // The lines of the old code no longer apply
+        codeChanged();
     }
 
-    // Method to run the bytecode instructions
+    // Runs the compiled class once the code is hot, otherwise interprets it. Both leave the same
+    // memory, accumulator and output behind.
     public void run() {
-        // Loop through bytecode array two elements at a time (command + operand)
-        for (int i = 0; i < bytecode.size(); i += 2) {
-            // Ensure there are at least two elements left (command and operand)
-            if (i + 1 >= bytecode.size()) {
-                System.out.println("Invalid bytecode: Missing operand for command at index " + i);
-                break;
+        Metrics.Timer timer = Metrics.ENABLED ? Metrics.start(Metrics.Phase.RUN) : null;
+        if (recorder == null && compiled == null && !jitFailed && jitThreshold >= 0 && interpretedRuns++ >= jitThreshold) {
+            compiled = JitCompiler.compile(code, codeLength, memorySize);
+            jitFailed = compiled == null;
+        }
+        if (compiled != null && recorder == null) {
+            accumulator = compiled.run(accumulator, memory);
+        } else {
+            interpret();
+        }
+        if (timer != null) {
+            recordRun(timer);
+        }
+    }
+
+    // Adds a finished run to the metrics. Straight-line code executes each instruction once per run,
+    // so the opcodes in the code are the estimate of the opcodes executed.
+    private void recordRun(Metrics.Timer timer) {
+        if (opcodeHistogram == null) {
+            opcodeHistogram = Metrics.histogram(code, codeLength);
+        }
+        Metrics.addOpcodeEstimate(opcodeHistogram);
+        timer.stop(codeLength / 2);
+    }
+
+    // Runs the pre-decoded instructions, decoding the code first if it changed since the last run.
+    // With a recorder the original code is interpreted instead, so that every pc can be recorded.
+    private void interpret() {
+        if (recorder != null) {
+            runRecorded();
+        } else {
+            if (decoded == null) {
+                decode();
+            }
+            if (closureDispatch) {
+                if (steps == null) {
+                    steps = compileSteps();
+                }
+                for (Runnable step : steps) {
+                    step.run();
+                }
+            } else if (verificationErrors.isEmpty()) {
+                runUnchecked();
+            } else {
+                runDecoded();
             }
+        }
 
-            // Retrieve the current command and operand
-            int command = bytecode.get(i);
-            int operand = bytecode.get(i + 1);
+        // Ensure there was no command left without its operand
+        int end = codeLength & ~1;
+        if (end != codeLength) {
+            System.out.println("Invalid bytecode: Missing operand for command at index " + end);
+        }
+    }
 
-            // Execute the command based on its type
-            switch (command) {
+    // Translates the code into the decoded form: an opcode followed by its operands, with
+    // LOADI,STORE and LOAD,LOADI,STORE fused when their addresses are inside memory
+    private void decode() {
+        int[] code = this.code;
+        int end = codeLength & ~1;  // Only complete command + operand pairs are executed
+        int[] out = new int[end + 1];  // Fused instructions are shorter than the pairs they replace; +1 so every opcode has an operand slot
+        int length = 0;
+        int instructions = 0;
+        int i = 0;
+        while (i < end) {
+            int command = code[i];
+            if (command == LOAD && i + 6 <= end && code[i + 2] == LOADI && code[i + 4] == STORE
+                    && inMemory(code[i + 1]) && inMemory(code[i + 5])) {
+                out[length++] = LOAD_LOADI_STORE;
+                out[length++] = code[i + 1];
+                out[length++] = code[i + 3];
+                out[length++] = code[i + 5];
+                i += 6;
+            } else if (command == LOADI && i + 4 <= end && code[i + 2] == STORE && inMemory(code[i + 3])) {
+                out[length++] = LOADI_STORE;
+                out[length++] = code[i + 1];
+                out[length++] = code[i + 3];
+                i += 4;
+            } else if (command < LOAD || command > POPDIV) {
+                out[length++] = INVALID;
+                i += 2;
+            } else {
+                out[length++] = command;
+                out[length++] = code[i + 1];
+                i += 2;
+            }
+            instructions++;
+        }
+        decoded = out;
+        decodedLength = length;
+        decodedInstructions = instructions;
+        verificationErrors = BytecodeVerifier.verify(code, codeLength, memorySize);
+    }
+
+    private boolean inMemory(int address) {
+        return address >= 0 && address < memorySize;
+    }
+
+    // Switch dispatch over the decoded instructions
+    private void runDecoded() {
+        int[] decoded = this.decoded;
+        int end = decodedLength;
+        int pc = 0;
+        while (pc < end) {
+            int operand = decoded[pc + 1];
+            switch (decoded[pc]) {
+                case LOADI_STORE:
+                    memory[decoded[pc + 2]] = accumulator + operand;  // Address checked by decode()
+                    accumulator = 0;
+                    pc += 3;
+                    continue;
+                case LOAD_LOADI_STORE:
+                    memory[decoded[pc + 3]] = accumulator + memory[operand] + decoded[pc + 2];
+                    accumulator = 0;
+                    pc += 4;
+                    continue;
+                case INVALID:
+                    System.out.println(INVALID_COMMAND_MESSAGE); // Invalid command error
+                    pc += 1;
+                    continue;
                 case LOAD:
                     runLoad(operand); // Load value from memory into the accumulator
                     break;
@@ -64,20 +261,453 @@ public class ByteCodeInterpreter {
                 case STORE:
                     runStore(operand); // Store accumulator value into memory
                     break;
+                case SUB:
+                    if (checkAddress(operand)) {
+                        accumulator -= memory[operand];
+                    }
+                    break;
+                case SUBI:
+                    accumulator -= operand;
+                    break;
+                case MULT:
+                    if (checkAddress(operand)) {
+                        accumulator *= memory[operand];
+                    }
+                    break;
+                case MULTI:
+                    accumulator *= operand;
+                    break;
+                case DIV:
+                    if (checkAddress(operand)) {
+                        accumulator = divide(accumulator, memory[operand]);
+                    }
+                    break;
+                case DIVI:
+                    accumulator = divide(accumulator, operand);
+                    break;
+                case PUSH:
+                    runPush();
+                    break;
+                case POPADD:
+                    accumulator = pop() + accumulator;
+                    break;
+                case POPSUB:
+                    accumulator = pop() - accumulator;
+                    break;
+                case POPMULT:
+                    accumulator = pop() * accumulator;
+                    break;
+                case POPDIV:
+                    accumulator = divide(pop(), accumulator);
+                    break;
+                default:
+                    break;
+            }
+            pc += 2;
+        }
+    }
+
+    // Switch dispatch for verified code: every address is inside memory, every command is known and
+    // no POP finds the stack empty, so nothing is checked and the only output is a division by zero
+    private void runUnchecked() {
+        int[] decoded = this.decoded;
+        int[] memory = this.memory;
+        int accumulator = this.accumulator;
+        int end = decodedLength;
+        int pc = 0;
+        while (pc < end) {
+            int operand = decoded[pc + 1];
+            switch (decoded[pc]) {
+                case LOADI_STORE:
+                    memory[decoded[pc + 2]] = accumulator + operand;
+                    accumulator = 0;
+                    pc += 3;
+                    continue;
+                case LOAD_LOADI_STORE:
+                    memory[decoded[pc + 3]] = accumulator + memory[operand] + decoded[pc + 2];
+                    accumulator = 0;
+                    pc += 4;
+                    continue;
+                case LOAD:
+                    accumulator += memory[operand];
+                    break;
+                case LOADI:
+                    accumulator += operand;
+                    break;
+                case STORE:
+                    memory[operand] = accumulator;
+                    accumulator = 0;
+                    break;
+                case SUB:
+                    accumulator -= memory[operand];
+                    break;
+                case SUBI:
+                    accumulator -= operand;
+                    break;
+                case MULT:
+                    accumulator *= memory[operand];
+                    break;
+                case MULTI:
+                    accumulator *= operand;
+                    break;
+                case DIV:
+                    accumulator = divide(accumulator, memory[operand]);
+                    break;
+                case DIVI:
+                    accumulator = divide(accumulator, operand);
+                    break;
+                case PUSH:
+                    if (stackSize == stack.length) {
+                        stack = Arrays.copyOf(stack, stackSize * 2);
+                    }
+                    stack[stackSize++] = accumulator;
+                    accumulator = 0;
+                    break;
+                case POPADD:
+                    accumulator = stack[--stackSize] + accumulator;
+                    break;
+                case POPSUB:
+                    accumulator = stack[--stackSize] - accumulator;
+                    break;
+                case POPMULT:
+                    accumulator = stack[--stackSize] * accumulator;
+                    break;
+                default:
+                    accumulator = divide(stack[--stackSize], accumulator);  // POPDIV
+                    break;
+            }
+            pc += 2;
+        }
+        this.accumulator = accumulator;
+    }
+
+    // Interprets the original code pair by pair with every check, and records each instruction after it
+    // executed. The first run-time error of a run prints the recorder's dump right after the error.
+    private void runRecorded() {
+        ExecutionRecorder recorder = this.recorder;
+        int[] code = this.code;
+        int end = codeLength & ~1;
+        boolean dumped = false;
+        for (int pc = 0; pc < end; pc += 2) {
+            int command = code[pc];
+            int operand = code[pc + 1];
+            boolean fails = fails(command, operand);
+            switch (command) {
+                case LOAD:
+                    runLoad(operand);
+                    break;
+                case LOADI:
+                    runLoadi(operand);
+                    break;
+                case STORE:
+                    runStore(operand);
+                    break;
+                case SUB:
+                    if (checkAddress(operand)) {
+                        accumulator -= memory[operand];
+                    }
+                    break;
+                case SUBI:
+                    accumulator -= operand;
+                    break;
+                case MULT:
+                    if (checkAddress(operand)) {
+                        accumulator *= memory[operand];
+                    }
+                    break;
+                case MULTI:
+                    accumulator *= operand;
+                    break;
+                case DIV:
+                    if (checkAddress(operand)) {
+                        accumulator = divide(accumulator, memory[operand]);
+                    }
+                    break;
+                case DIVI:
+                    accumulator = divide(accumulator, operand);
+                    break;
+                case PUSH:
+                    runPush();
+                    break;
+                case POPADD:
+                    accumulator = pop() + accumulator;
+                    break;
+                case POPSUB:
+                    accumulator = pop() - accumulator;
+                    break;
+                case POPMULT:
+                    accumulator = pop() * accumulator;
+                    break;
+                case POPDIV:
+                    accumulator = divide(pop(), accumulator);
+                    break;
+                default:
+                    System.out.println(INVALID_COMMAND_MESSAGE);
+                    break;
+            }
+            recorder.record(pc, command, operand, accumulator);
+            if (fails && !dumped) {
+                System.out.println(recorder.dump(lineTable));
+                dumped = true;
+            }
+        }
+    }
+
+    // True if executing the instruction prints a run-time error
+    private boolean fails(int command, int operand) {
+        switch (command) {
+            case LOAD:
+            case STORE:
+            case SUB:
+            case MULT:
+                return !inMemory(operand);
+            case DIV:
+                return !inMemory(operand) || memory[operand] == 0;
+            case DIVI:
+                return operand == 0;
+            case LOADI:
+            case SUBI:
+            case MULTI:
+            case PUSH:
+                return false;
+            case POPADD:
+            case POPSUB:
+            case POPMULT:
+                return stackSize == 0;
+            case POPDIV:
+                return stackSize == 0 || accumulator == 0;
+            default:
+                return true;  // Invalid command
+        }
+    }
+
+    // Closure-compiled dispatch: one handler per decoded instruction with its operands bound
+    private Runnable[] compileSteps() {
+        Runnable[] handlers = new Runnable[decodedInstructions];
+        int[] decoded = this.decoded;
+        int pc = 0;
+        for (int n = 0; n < handlers.length; n++) {
+            int command = decoded[pc];
+            if (command == INVALID) {
+                handlers[n] = () -> System.out.println(INVALID_COMMAND_MESSAGE);
+                pc += 1;
+                continue;
+            }
+            int operand = decoded[pc + 1];
+            switch (command) {
+                case LOADI_STORE: {
+                    int address = decoded[pc + 2];
+                    handlers[n] = () -> {
+                        memory[address] = accumulator + operand;
+                        accumulator = 0;
+                    };
+                    pc += 3;
+                    continue;
+                }
+                case LOAD_LOADI_STORE: {
+                    int value = decoded[pc + 2];
+                    int address = decoded[pc + 3];
+                    handlers[n] = () -> {
+                        memory[address] = accumulator + memory[operand] + value;
+                        accumulator = 0;
+                    };
+                    pc += 4;
+                    continue;
+                }
+                case LOAD:
+                    handlers[n] = () -> runLoad(operand);
+                    break;
+                case LOADI:
+                    handlers[n] = () -> runLoadi(operand);
+                    break;
+                case STORE:
+                    handlers[n] = () -> runStore(operand);
+                    break;
+                case SUB:
+                    handlers[n] = () -> {
+                        if (checkAddress(operand)) {
+                            accumulator -= memory[operand];
+                        }
+                    };
+                    break;
+                case SUBI:
+                    handlers[n] = () -> accumulator -= operand;
+                    break;
+                case MULT:
+                    handlers[n] = () -> {
+                        if (checkAddress(operand)) {
+                            accumulator *= memory[operand];
+                        }
+                    };
+                    break;
+                case MULTI:
+                    handlers[n] = () -> accumulator *= operand;
+                    break;
+                case DIV:
+                    handlers[n] = () -> {
+                        if (checkAddress(operand)) {
+                            accumulator = divide(accumulator, memory[operand]);
+                        }
+                    };
+                    break;
+                case DIVI:
+                    handlers[n] = () -> accumulator = divide(accumulator, operand);
+                    break;
+                case PUSH:
+                    handlers[n] = this::runPush;
+                    break;
+                case POPADD:
+                    handlers[n] = () -> accumulator = pop() + accumulator;
+                    break;
+                case POPSUB:
+                    handlers[n] = () -> accumulator = pop() - accumulator;
+                    break;
+                case POPMULT:
+                    handlers[n] = () -> accumulator = pop() * accumulator;
+                    break;
                 default:
-                    System.out.println("Invalid command!"); // Invalid command error
+                    handlers[n] = () -> accumulator = divide(pop(), accumulator);  // POPDIV
+                    break;
             }
+            pc += 2;
+        }
+        return handlers;
+    }
+
+    // Forgets the decoded form, the compiled class and the run count, e.g. after the code changed
+    private void codeChanged() {
+        decoded = null;
+        steps = null;
+        compiled = null;
+        jitFailed = false;
+        interpretedRuns = 0;
+        graph = null;
+        graphBuilt = false;
+        opcodeHistogram = null;
+    }
+
+    /**
+     * Runs independent statements in parallel, leaving the same memory, accumulator and output as run().
+     * Falls back to run() when the code is not verified, has too little parallelism (see DependencyGraph),
+     * when the accumulator is not 0 at the start, when a division by zero has to be reported, or
+     * while a recorder is set.
+     */
+    public void runParallel() {
+        DependencyGraph graph = recorder == null ? getDependencyGraph() : null;
+        if (graph == null || accumulator != 0) {
+            run();
+            return;
+        }
+        Metrics.Timer timer = Metrics.ENABLED ? Metrics.start(Metrics.Phase.RUN) : null;  // Dropped if it falls back
+        if (!graph.run(memory)) {
+            run();
+        } else if (timer != null) {
+            recordRun(timer);
+        }
+    }
+
+    // Dependency graph runParallel() uses, or null when it runs sequentially
+    public DependencyGraph getDependencyGraph() {
+        if (!graphBuilt) {
+            graph = DependencyGraph.build(code, codeLength, memorySize);
+            graphBuilt = true;
+        }
+        return graph;
+    }
+
+    /**
+     * Attaches a flight recorder: from now on run() interprets the original code and records every
+     * instruction, and the first run-time error of each run prints the recorder's dump. The JIT and
+     * the decoded form are not used while a recorder is set.
+     * @param recorder the recorder, or null to run at full speed again
+     */
+    public void setRecorder(ExecutionRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    public ExecutionRecorder getRecorder() {
+        return recorder;
+    }
+
+    // The recorder's dump with source lines, on demand, or null when no recorder is set
+    public String dumpRecorder() {
+        return recorder == null ? null : recorder.dump(lineTable);
+    }
+
+    // Marks the instructions generated from now on as coming from a source line
+    public void markLine(int line) {
+        lineTable.add(codeLength, line);
+    }
+
+    // Source lines of the code; empty for code set with replaceCode() unless a table was set after it
+    public LineTable getLineTable() {
+        return lineTable;
+    }
+
+    public void setLineTable(LineTable lineTable) {
+        this.lineTable = lineTable;
+    }
+
+    // Name of a command, e.g. "LOADI", or its number if it is not a known command
+    public static String commandName(int command) {
+        return command >= LOAD && command <= POPDIV ? COMMAND_NAMES[command] : String.valueOf(command);
+    }
+
+    // Number of interpreted runs before the code is compiled; 0 compiles on the first run, negative never
+    public void setJitThreshold(int jitThreshold) {
+        this.jitThreshold = jitThreshold;
+    }
+
+    public int getJitThreshold() {
+        return jitThreshold;
+    }
+
+    // Verifies the code against the current memory size once; an empty list means run() takes the unchecked path
+    public List<VerificationError> verify() {
+        if (decoded == null) {
+            decode();
+        }
+        return new ArrayList<>(verificationErrors);
+    }
+
+    // Runs the code only if it passes verification, otherwise rejects it with every error found
+    public void runVerified() {
+        List<VerificationError> errors = verify();
+        if (!errors.isEmpty()) {
+            throw new BytecodeVerifier.VerificationException(errors);
         }
+        run();
+    }
+
+    // Selects closure-compiled handlers instead of the switch over the decoded instructions
+    public void setClosureDispatch(boolean closureDispatch) {
+        this.closureDispatch = closureDispatch;
+    }
+
+    public boolean isClosureDispatch() {
+        return closureDispatch;
+    }
+
+    // Number of decoded instructions the interpreter dispatches per run, after fusing
+    public int getDecodedInstructionCount() {
+        if (decoded == null) {
+            decode();
+        }
+        return decodedInstructions;
+    }
+
+    // True once run() executes the compiled class instead of interpreting
+    public boolean isCompiled() {
+        return compiled != null;
     }
 
     // Helper method to execute LOAD command (loads from memory to accumulator)
     private void runLoad(int address) {
         // Check if the memory address is valid
-        if (address < 0 || address >= memorySize) {
-            System.out.println("Run-time error: Address out of bounds");
+        if (!checkAddress(address)) {
             return;
         }
-        accumulator += memory.get(address); // Add value from memory to accumulator
+        accumulator += memory[address]; // Add value from memory to accumulator
     }
 
     // Helper method to execute LOADI command (loads immediate value into accumulator)
@@ -88,22 +718,105 @@ public class ByteCodeInterpreter {
     // Helper method to execute STORE command (stores accumulator into memory)
     private void runStore(int address) {
         // Check if the memory address is valid
-        if (address < 0 || address >= memorySize) {
-            System.out.println("Run-time error: Address out of bounds");
+        if (!checkAddress(address)) {
             return;
         }
-        memory.set(address, accumulator); // Store accumulator value in memory
+        memory[address] = accumulator; // Store accumulator value in memory
         accumulator = 0; // Reset accumulator after storing
     }
 
-    // Getter method for the bytecode, useful for testing and debugging
+    // Returns true if the address is inside memory, otherwise reports a run-time error
+    private boolean checkAddress(int address) {
+        if (address < 0 || address >= memorySize) {
+            System.out.println(ADDRESS_OUT_OF_BOUNDS_MESSAGE);
+            return false;
+        }
+        return true;
+    }
+
+    // Helper method to execute PUSH command (saves the accumulator and starts a subexpression)
+    private void runPush() {
+        if (stackSize == stack.length) {
+            stack = Arrays.copyOf(stack, stackSize * 2);
+        }
+        stack[stackSize++] = accumulator;
+        accumulator = 0;
+    }
+
+    // Pops the left operand saved by PUSH
+    private int pop() {
+        if (stackSize == 0) {
+            System.out.println(EMPTY_STACK_MESSAGE);
+            return 0;
+        }
+        return stack[--stackSize];
+    }
+
+    // Integer division; dividing by zero is reported and leaves the left operand unchanged
+    public static int divide(int dividend, int divisor) {
+        return divide(dividend, divisor, null, null, -1, -1);
+    }
+
+    /**
+     * Integer division for every tier: dividing by zero is reported and leaves the left operand unchanged
+     * @param context where the error is reported, or null to print it
+     * @param program gives the line and the divisor's identifier for the report, or null for none
+     * @param pc code index of the dividing command
+     * @param address where the divisor was loaded from, -1 for none
+     */
+    static int divide(int dividend, int divisor, ExecutionContext context, Program program, int pc, int address) {
+        if (divisor == 0) {
+            report(context, Diagnostic.Kind.DIVISION_BY_ZERO, program == null ? -1 : program.getLine(pc),
+                    program == null ? null : program.identifierAt(address), DIVISION_BY_ZERO_MESSAGE);
+            return dividend;
+        }
+        return dividend / divisor;
+    }
+
+    // Reports a run-time error through the context, or prints it when there is none
+    static void report(ExecutionContext context, Diagnostic.Kind kind, int line, String identifier, String message) {
+        if (context == null) {
+            System.out.println(message);
+        } else {
+            context.report(new Diagnostic(kind, line, identifier, message));
+        }
+    }
+
+    // Copy of the generated code, trimmed to its length
+    public int[] getCode() {
+        return Arrays.copyOf(code, codeLength);
+    }
+
+    // Number of ints (commands plus operands) generated so far
+    public int getCodeLength() {
+        return codeLength;
+    }
+
+    // Value stored at a memory address
+    public int getMemoryValue(int address) {
+        return memory[address];
+    }
+
+    public int getMemorySize() {
+        return memorySize;
+    }
+
+    // Boxed copy of the bytecode, useful for testing and debugging
     public ArrayList<Integer> getBytecode() {
+        ArrayList<Integer> bytecode = new ArrayList<>(codeLength);
+        for (int i = 0; i < codeLength; i++) {
+            bytecode.add(code[i]);
+        }
         return bytecode;
     }
 
-    // Getter method for the memory, useful for testing and debugging
+    // Boxed copy of the memory, useful for testing and debugging
     public ArrayList<Integer> getMemory() {
-        return memory;
+        ArrayList<Integer> values = new ArrayList<>(memorySize);
+        for (int value : memory) {
+            values.add(value);
+        }
+        return values;
     }
 
     // Getter method for the accumulator, useful for testing and debugging
@@ -113,6 +826,6 @@ public class ByteCodeInterpreter {
 
     // toString method to print the current state of the interpreter
     public String toString() {
-        return "Byte Code Generated: " + getBytecode() + "\nMemory: " + getMemory();
+        return "Byte Code Generated: " + Arrays.toString(getCode()) + "\nMemory: " + Arrays.toString(memory);
     }
-}
\ No newline at end of file
+}
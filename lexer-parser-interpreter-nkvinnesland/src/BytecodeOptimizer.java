@@ -0,0 +1,418 @@
+import java.util.Arrays;
+
+/**
+ * Optimization passes over the code generated by the Parser, run between parseProgram() and run().
+ * The optimized program leaves exactly the same memory behind as the original one.
+ *
+ * Constant folding works statement by statement (a statement ends with STORE). Every value the
+ * program computes from literals alone is known at compile time, so such a statement becomes a
+ * single LOADI + STORE, and loads of variables whose value is known are replaced by immediates.
+ *
+ * Dead-store elimination drops statements whose STORE is overwritten before anything loads it,
+ * together with all the instructions computing the stored value. The peephole pass merges
+ * adjacent immediates and removes instructions that do nothing.
+ */
+public class BytecodeOptimizer {
+
+    // Set -Doptimizer.peephole=false to skip dead-store elimination and the peephole pass while debugging
+    private boolean peepholeEnabled = !"false".equals(System.getProperty("optimizer.peephole"));
+
+    // Instruction counts (command + operand pairs) of the last optimized program
+    private int instructionsBefore = 0;
+    private int instructionsAfter = 0;
+
+    // Output of the pass being run
+    private int[] out;
+    private int outLength;
+
+    // What is known at compile time about each memory address
+    private boolean[] known;
+    private int[] values;
+
+    // Abstract operand stack used while simulating one statement
+    private boolean[] stackKnown = new boolean[16];
+    private int[] stackValues = new int[16];
+    private int stackSize;
+
+    /**
+     * Runs every enabled pass: constant folding, then dead-store elimination and the peephole pass
+     * @param interpreter holds the code to optimize; its code is replaced
+     * @return number of instructions removed
+     */
+    public int optimize(ByteCodeInterpreter interpreter) {
+        int before = interpreter.getCodeLength() / 2;
+        foldConstants(interpreter);
+        if (peepholeEnabled) {
+            eliminateDeadStores(interpreter);
+            peephole(interpreter);
+        }
+        instructionsBefore = before;
+        return getInstructionsRemoved();
+    }
+
+    public void setPeepholeEnabled(boolean peepholeEnabled) {
+        this.peepholeEnabled = peepholeEnabled;
+    }
+
+    public boolean isPeepholeEnabled() {
+        return peepholeEnabled;
+    }
+
+    /**
+     * Folds constant expressions and propagates known variable values into later statements
+     * @param interpreter holds the code to optimize; its code is replaced
+     * @return number of instructions removed
+     */
+    public int foldConstants(ByteCodeInterpreter interpreter) {
+        int[] code = interpreter.getCode();
+        int memorySize = interpreter.getMemorySize();
+        instructionsBefore = code.length / 2;
+        out = new int[code.length];
+        outLength = 0;
+        known = new boolean[memorySize];  // Nothing is known before the program stores it
+        values = new int[memorySize];
+
+        int statementStart = 0;
+        int pc = 0;
+        for (; pc + 1 < code.length; pc += 2) {
+            if (code[pc] != ByteCodeInterpreter.STORE) {
+                continue;
+            }
+            if (!foldStatement(code, statementStart, pc, memorySize)) {
+                break;  // Code the Parser would not produce; leave the rest alone
+            }
+            statementStart = pc + 2;
+        }
+
+        // Anything after the last statement we understood is copied unchanged
+        System.arraycopy(code, statementStart, out, outLength, code.length - statementStart);
+        outLength += code.length - statementStart;
+
+        interpreter.replaceCode(out, outLength);
+        instructionsAfter = outLength / 2;
+        out = null;
+        return getInstructionsRemoved();
+    }
+
+    // Simulates the statement code[start .. store] with the values known so far and emits
+    // its folded form. Returns false, emitting nothing, if the statement does not have the
+    // shape the Parser generates (the accumulator starts at 0 and the operand stack is balanced).
+    private boolean foldStatement(int[] code, int start, int store, int memorySize) {
+        int target = code[store + 1];
+        if (target < 0 || target >= memorySize) {
+            return false;  // The STORE fails at run time and does not reset the accumulator
+        }
+
+        boolean accKnown = true;
+        int acc = 0;  // The accumulator is 0 at the start of every statement
+        boolean reportsError = false;  // The statement prints a run-time error, so it must stay as it is
+        stackSize = 0;
+
+        for (int pc = start; pc < store; pc += 2) {
+            int command = code[pc];
+            int operand = code[pc + 1];
+            boolean operandKnown = true;
+            int value = operand;
+
+            // Memory operands are known when the address was last stored with a known value
+            if (command == ByteCodeInterpreter.LOAD || command == ByteCodeInterpreter.SUB
+                    || command == ByteCodeInterpreter.MULT || command == ByteCodeInterpreter.DIV) {
+                if (operand < 0 || operand >= memorySize) {
+                    reportsError = true;  // Address out of bounds; the instruction is skipped
+                    continue;
+                }
+                operandKnown = known[operand];
+                value = values[operand];
+            }
+
+            switch (command) {
+                case ByteCodeInterpreter.LOAD:
+                case ByteCodeInterpreter.LOADI:
+                    accKnown &= operandKnown;
+                    acc += value;
+                    break;
+                case ByteCodeInterpreter.SUB:
+                case ByteCodeInterpreter.SUBI:
+                    accKnown &= operandKnown;
+                    acc -= value;
+                    break;
+                case ByteCodeInterpreter.MULT:
+                case ByteCodeInterpreter.MULTI:
+                    accKnown &= operandKnown;
+                    acc *= value;
+                    break;
+                case ByteCodeInterpreter.DIV:
+                case ByteCodeInterpreter.DIVI:
+                    if (operandKnown && value == 0) {
+                        reportsError = true;  // Division by zero leaves the accumulator as it is
+                    } else {
+                        accKnown &= operandKnown;
+                        acc = accKnown ? acc / value : 0;
+                    }
+                    break;
+                case ByteCodeInterpreter.PUSH:
+                    push(accKnown, acc);
+                    accKnown = true;
+                    acc = 0;
+                    break;
+                case ByteCodeInterpreter.POPADD:
+                case ByteCodeInterpreter.POPSUB:
+                case ByteCodeInterpreter.POPMULT:
+                case ByteCodeInterpreter.POPDIV:
+                    if (stackSize == 0) {
+                        return false;
+                    }
+                    stackSize--;
+                    boolean leftKnown = stackKnown[stackSize];
+                    int left = stackValues[stackSize];
+                    if (command == ByteCodeInterpreter.POPDIV && accKnown && acc == 0) {
+                        reportsError = true;
+                        accKnown = leftKnown;
+                        acc = left;
+                    } else {
+                        accKnown &= leftKnown;
+                        acc = accKnown ? combine(command, left, acc) : 0;
+                    }
+                    break;
+                default:
+                    return false;  // Invalid command
+            }
+        }
+        if (stackSize != 0) {
+            return false;
+        }
+
+        if (reportsError) {
+            // Keep the statement exactly as it is so the error is still reported when it runs
+            emit(code, start, store + 2 - start);
+            known[target] = false;
+        } else if (accKnown) {
+            emit(ByteCodeInterpreter.LOADI, acc);
+            emit(ByteCodeInterpreter.STORE, target);
+            known[target] = true;
+            values[target] = acc;
+        } else {
+            // Not constant, but loads of known variables can still become immediates
+            for (int pc = start; pc <= store; pc += 2) {
+                int command = code[pc];
+                int operand = code[pc + 1];
+                if (command != ByteCodeInterpreter.STORE && immediateForm(command) != command && known[operand]) {
+                    emit(immediateForm(command), values[operand]);
+                } else {
+                    emit(command, operand);
+                }
+            }
+            known[target] = false;
+        }
+        return true;
+    }
+
+    /**
+     * Removes statements whose stored value is overwritten before it is ever loaded.
+     * The last store to every address is kept, so the final memory is unchanged.
+     * @param interpreter holds the code to optimize; its code is replaced
+     * @return number of instructions removed
+     */
+    public int eliminateDeadStores(ByteCodeInterpreter interpreter) {
+        int[] code = interpreter.getCode();
+        int memorySize = interpreter.getMemorySize();
+        instructionsBefore = code.length / 2;
+        instructionsAfter = instructionsBefore;
+
+        // Find the statements and make sure they all have the shape the Parser generates
+        int[] stores = new int[code.length / 2];
+        int statements = 0;
+        int depth = 0;
+        for (int pc = 0; pc + 1 < code.length; pc += 2) {
+            int command = code[pc];
+            if (command < ByteCodeInterpreter.LOAD || command > ByteCodeInterpreter.POPDIV) {
+                return 0;  // Invalid command
+            }
+            if (command == ByteCodeInterpreter.PUSH) {
+                depth++;
+            } else if (command >= ByteCodeInterpreter.POPADD && --depth < 0) {
+                return 0;
+            } else if (command == ByteCodeInterpreter.STORE) {
+                if (depth != 0 || code[pc + 1] < 0 || code[pc + 1] >= memorySize) {
+                    return 0;
+                }
+                stores[statements++] = pc;
+            }
+        }
+        int tail = statements == 0 ? 0 : stores[statements - 1] + 2;
+
+        // Walk backwards: an address is overwritten if a later statement stores it before any load
+        boolean[] overwritten = new boolean[memorySize];
+        boolean[] dead = new boolean[statements];
+        markReads(code, tail, code.length, overwritten);
+        for (int s = statements - 1; s >= 0; s--) {
+            int start = s == 0 ? 0 : stores[s - 1] + 2;
+            int target = code[stores[s] + 1];
+            if (overwritten[target] && !mayReportError(code, start, stores[s], memorySize)) {
+                dead[s] = true;
+                continue;
+            }
+            overwritten[target] = true;
+            markReads(code, start, stores[s], overwritten);
+        }
+
+        out = new int[code.length];
+        outLength = 0;
+        for (int s = 0; s < statements; s++) {
+            int start = s == 0 ? 0 : stores[s - 1] + 2;
+            if (!dead[s]) {
+                emit(code, start, stores[s] + 2 - start);
+            }
+        }
+        emit(code, tail, code.length - tail);
+
+        interpreter.replaceCode(out, outLength);
+        instructionsAfter = outLength / 2;
+        out = null;
+        return getInstructionsRemoved();
+    }
+
+    // Every address the instructions code[from .. to) load is read before it is overwritten
+    private static void markReads(int[] code, int from, int to, boolean[] overwritten) {
+        for (int pc = from; pc < to && pc + 1 < code.length; pc += 2) {
+            if (immediateForm(code[pc]) != code[pc] && code[pc + 1] >= 0 && code[pc + 1] < overwritten.length) {
+                overwritten[code[pc + 1]] = false;
+            }
+        }
+    }
+
+    // True if running the statement code[start .. store) could print a run-time error, so it has to stay
+    private static boolean mayReportError(int[] code, int start, int store, int memorySize) {
+        for (int pc = start; pc < store; pc += 2) {
+            int command = code[pc];
+            int operand = code[pc + 1];
+            if (command == ByteCodeInterpreter.DIV || command == ByteCodeInterpreter.POPDIV
+                    || (command == ByteCodeInterpreter.DIVI && operand == 0)) {
+                return true;  // Possible division by zero
+            }
+            if (immediateForm(command) != command && (operand < 0 || operand >= memorySize)) {
+                return true;  // Address out of bounds
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Merges adjacent immediates (LOADI 2, LOADI 3 becomes LOADI 5; LOADI 9, SUBI 4 becomes LOADI 5;
+     * MULTI 2, MULTI 3 becomes MULTI 6) and drops LOADI 0, SUBI 0, MULTI 1 and DIVI 1, which do nothing.
+     * @param interpreter holds the code to optimize; its code is replaced
+     * @return number of instructions removed
+     */
+    public int peephole(ByteCodeInterpreter interpreter) {
+        int[] code = interpreter.getCode();
+        instructionsBefore = code.length / 2;
+        out = new int[code.length];
+        outLength = 0;
+
+        int end = code.length & ~1;
+        for (int pc = 0; pc < end; pc += 2) {
+            int command = code[pc];
+            int operand = code[pc + 1];
+            int last = outLength >= 2 ? out[outLength - 2] : -1;
+            int lastOperand = outLength >= 2 ? out[outLength - 1] : 0;
+
+            if (command == ByteCodeInterpreter.LOADI || command == ByteCodeInterpreter.SUBI) {
+                // Both add a constant to the accumulator: LOADI v adds v, SUBI v adds -v
+                int addend = command == ByteCodeInterpreter.LOADI ? operand : -operand;
+                boolean subtract = command == ByteCodeInterpreter.SUBI;
+                if (last == ByteCodeInterpreter.LOADI || last == ByteCodeInterpreter.SUBI) {
+                    outLength -= 2;
+                    addend += last == ByteCodeInterpreter.LOADI ? lastOperand : -lastOperand;
+                    subtract &= last == ByteCodeInterpreter.SUBI;  // Keep SUBI when both were subtractions
+                }
+                if (addend != 0) {
+                    emit(subtract ? ByteCodeInterpreter.SUBI : ByteCodeInterpreter.LOADI, subtract ? -addend : addend);
+                }
+            } else if (command == ByteCodeInterpreter.MULTI) {
+                if (last == ByteCodeInterpreter.MULTI) {
+                    outLength -= 2;
+                    operand *= lastOperand;
+                }
+                if (operand != 1) {
+                    emit(command, operand);
+                }
+            } else if (!(command == ByteCodeInterpreter.DIVI && operand == 1)) {
+                emit(command, operand);
+            }
+        }
+        emit(code, end, code.length - end);
+
+        interpreter.replaceCode(out, outLength);
+        instructionsAfter = outLength / 2;
+        out = null;
+        return getInstructionsRemoved();
+    }
+
+    // Value of a POP command applied to the saved left operand and the accumulator
+    private static int combine(int command, int left, int right) {
+        switch (command) {
+            case ByteCodeInterpreter.POPSUB:
+                return left - right;
+            case ByteCodeInterpreter.POPMULT:
+                return left * right;
+            case ByteCodeInterpreter.POPDIV:
+                return left / right;
+            default:
+                return left + right;
+        }
+    }
+
+    // The immediate version of a command reading memory, or the command itself
+    private static int immediateForm(int command) {
+        switch (command) {
+            case ByteCodeInterpreter.LOAD:
+                return ByteCodeInterpreter.LOADI;
+            case ByteCodeInterpreter.SUB:
+                return ByteCodeInterpreter.SUBI;
+            case ByteCodeInterpreter.MULT:
+                return ByteCodeInterpreter.MULTI;
+            case ByteCodeInterpreter.DIV:
+                return ByteCodeInterpreter.DIVI;
+            default:
+                return command;
+        }
+    }
+
+    private void push(boolean valueKnown, int value) {
+        if (stackSize == stackValues.length) {
+            stackKnown = Arrays.copyOf(stackKnown, stackSize * 2);
+            stackValues = Arrays.copyOf(stackValues, stackSize * 2);
+        }
+        stackKnown[stackSize] = valueKnown;
+        stackValues[stackSize] = value;
+        stackSize++;
+    }
+
+    private void emit(int command, int operand) {
+        out[outLength++] = command;
+        out[outLength++] = operand;
+    }
+
+    private void emit(int[] code, int from, int length) {
+        System.arraycopy(code, from, out, outLength, length);
+        outLength += length;
+    }
+
+    public int getInstructionsBefore() {
+        return instructionsBefore;
+    }
+
+    public int getInstructionsAfter() {
+        return instructionsAfter;
+    }
+
+    public int getInstructionsRemoved() {
+        return instructionsBefore - instructionsAfter;
+    }
+
+    @Override
+    public String toString() {
+        return "Optimizer removed " + getInstructionsRemoved() + " of " + instructionsBefore
+                + " instructions (" + instructionsAfter + " left)";
+    }
+}
@@ -0,0 +1,77 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks a whole program once, before it runs: every command is known and has its operand,
+ * every address is inside memory and no POP finds the operand stack empty. The interpreter
+ * runs verified code without any per-instruction checks.
+ * @see VerificationError
+ * @see ByteCodeInterpreter
+ */
+public class BytecodeVerifier {
+
+    /**
+     * Thrown when a program that has to be verified is not, with every error found
+     */
+    public static class VerificationException extends IllegalArgumentException {
+        private final List<VerificationError> errors;
+
+        public VerificationException(List<VerificationError> errors) {
+            super("Bytecode failed verification: " + errors);
+            this.errors = errors;
+        }
+
+        public List<VerificationError> getErrors() {
+            return errors;
+        }
+    }
+
+    /**
+     * Verifies the first length ints of code against a memory of memorySize ints
+     * @return every error in code order, empty when the program is valid
+     */
+    public static List<VerificationError> verify(int[] code, int length, int memorySize) {
+        ArrayList<VerificationError> errors = new ArrayList<>();
+        int end = length & ~1;
+        int depth = 0;  // Straight-line code, so the stack depth at each command is known
+        for (int i = 0; i < end; i += 2) {
+            int command = code[i];
+            int operand = code[i + 1];
+            switch (command) {
+                case ByteCodeInterpreter.LOAD:
+                case ByteCodeInterpreter.STORE:
+                case ByteCodeInterpreter.SUB:
+                case ByteCodeInterpreter.MULT:
+                case ByteCodeInterpreter.DIV:
+                    if (operand < 0 || operand >= memorySize) {
+                        errors.add(new VerificationError(Diagnostic.Kind.ADDRESS_OUT_OF_BOUNDS, i, command, operand));
+                    }
+                    break;
+                case ByteCodeInterpreter.LOADI:
+                case ByteCodeInterpreter.SUBI:
+                case ByteCodeInterpreter.MULTI:
+                case ByteCodeInterpreter.DIVI:
+                    break;
+                case ByteCodeInterpreter.PUSH:
+                    depth++;
+                    break;
+                case ByteCodeInterpreter.POPADD:
+                case ByteCodeInterpreter.POPSUB:
+                case ByteCodeInterpreter.POPMULT:
+                case ByteCodeInterpreter.POPDIV:
+                    if (depth == 0) {
+                        errors.add(new VerificationError(Diagnostic.Kind.EMPTY_STACK, i, command, operand));
+                    } else {
+                        depth--;
+                    }
+                    break;
+                default:
+                    errors.add(new VerificationError(Diagnostic.Kind.INVALID_COMMAND, i, command, operand));
+            }
+        }
+        if (end != length) {
+            errors.add(new VerificationError(Diagnostic.Kind.MISSING_OPERAND, end, code[end], 0));
+        }
+        return errors;
+    }
+}
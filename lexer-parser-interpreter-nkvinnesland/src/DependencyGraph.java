@@ -0,0 +1,265 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Read/write dependencies between the statements of a program, used to run independent
+ * statements in parallel. A statement is the code up to and including its STORE. It reads the
+ * addresses of its LOAD, SUB, MULT and DIV and writes the address of its STORE, and it depends on
+ * an earlier statement when one of them writes an address the other reads or writes (read after
+ * write, write after read, write after write). Statements that only read the same address, such
+ * as an input no statement assigns, do not depend on each other. The weakly connected components
+ * of the dependency DAG are found with a union-find over these edges, and are packed into a few
+ * tasks of similar size. Each task runs its statements in program order.
+ * @see ByteCodeInterpreter#runParallel()
+ */
+public class DependencyGraph {
+
+    // Instructions a task should have at least, so that scheduling it pays off
+    public static final int MIN_TASK_INSTRUCTIONS = 4096;
+
+    // Total work over the largest component below which the program runs sequentially
+    public static final double MIN_PARALLELISM = 2.0;
+
+    private final Program program;  // The code, unnamed; its interpreter loop runs the tasks
+    private final int[][] tasks;  // Per task: start and end code index of each statement, in program order
+    private final int components;
+    private final double parallelism;
+
+    private DependencyGraph(Program program, int[][] tasks, int components, double parallelism) {
+        this.program = program;
+        this.tasks = tasks;
+        this.components = components;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Builds the graph of code, or returns null when the code should run sequentially: it does not
+     * pass BytecodeVerifier, a statement leaves values on the operand stack, the code does not end
+     * with a STORE, or the components are too unbalanced to give MIN_PARALLELISM.
+     * @param code the bytecode
+     * @param length number of ints of code in use
+     * @param memorySize memory size the code runs against
+     * @return the graph, or null
+     */
+    public static DependencyGraph build(int[] code, int length, int memorySize) {
+        if (length == 0 || length % 2 != 0 || code[length - 2] != ByteCodeInterpreter.STORE) {
+            return null;
+        }
+        Program program = new Program(Arrays.copyOf(code, length), new String[0], memorySize);
+        if (!program.isVerified()) {
+            return null;
+        }
+
+        // Statement boundaries, each ending with a STORE and leaving the stack as it found it
+        int[] ends = new int[16];
+        int statements = 0;
+        int depth = 0;
+        for (int pc = 0; pc < length; pc += 2) {
+            switch (code[pc]) {
+                case ByteCodeInterpreter.PUSH:
+                    depth++;
+                    break;
+                case ByteCodeInterpreter.POPADD:
+                case ByteCodeInterpreter.POPSUB:
+                case ByteCodeInterpreter.POPMULT:
+                case ByteCodeInterpreter.POPDIV:
+                    depth--;
+                    break;
+                case ByteCodeInterpreter.STORE:
+                    if (depth != 0) {
+                        return null;
+                    }
+                    if (statements == ends.length) {
+                        ends = Arrays.copyOf(ends, statements * 2);
+                    }
+                    ends[statements++] = pc + 2;
+                    break;
+                default:
+            }
+        }
+
+        // Union-find over statements, joined along the dependency edges. A reader after a write is
+        // joined with the writer, so a later writer only has to be joined with that writer too.
+        // Reads of an address nobody has written yet are kept in a list per address, and joined
+        // with the first statement that writes it.
+        int[] parent = new int[statements];
+        int[] writer = new int[memorySize];  // Last statement that wrote each address, -1 if none
+        Arrays.fill(writer, -1);
+        int[] firstRead = new int[memorySize];  // Head of each address's list of unwritten reads, -1 if none
+        Arrays.fill(firstRead, -1);
+        int[] readStatement = new int[length / 2];  // List nodes, one per read
+        int[] nextRead = new int[length / 2];
+        int reads = 0;
+        for (int s = 0, pc = 0; s < statements; s++) {
+            parent[s] = s;
+            for (; pc < ends[s]; pc += 2) {
+                if (!hasAddress(code[pc])) {
+                    continue;
+                }
+                int address = code[pc + 1];
+                if (writer[address] >= 0) {
+                    union(parent, writer[address], s);  // Read or write after write
+                } else if (code[pc] != ByteCodeInterpreter.STORE) {
+                    readStatement[reads] = s;
+                    nextRead[reads] = firstRead[address];
+                    firstRead[address] = reads++;
+                } else {
+                    for (int r = firstRead[address]; r >= 0; r = nextRead[r]) {
+                        union(parent, readStatement[r], s);  // Write after read
+                    }
+                    firstRead[address] = -1;
+                }
+                if (code[pc] == ByteCodeInterpreter.STORE) {
+                    writer[address] = s;
+                }
+            }
+        }
+
+        // Work per component, in instructions
+        int[] work = new int[statements];
+        int[] componentOf = new int[statements];
+        int components = 0;
+        int[] index = new int[statements];  // Component number of each root
+        Arrays.fill(index, -1);
+        for (int s = 0; s < statements; s++) {
+            int root = find(parent, s);
+            if (index[root] < 0) {
+                index[root] = components++;
+            }
+            componentOf[s] = index[root];
+            work[componentOf[s]] += (ends[s] - (s == 0 ? 0 : ends[s - 1])) / 2;
+        }
+        int total = length / 2;
+        int largest = 0;
+        for (int c = 0; c < components; c++) {
+            largest = Math.max(largest, work[c]);
+        }
+        double parallelism = (double) total / largest;
+        if (parallelism < MIN_PARALLELISM || total < 2 * MIN_TASK_INSTRUCTIONS) {
+            return null;
+        }
+
+        // Largest components first, each onto the least loaded task
+        int taskCount = Math.min(components, Math.min(total / MIN_TASK_INSTRUCTIONS,
+                ForkJoinPool.getCommonPoolParallelism() * 4));
+        taskCount = Math.max(taskCount, 2);
+        Integer[] order = new Integer[components];
+        for (int c = 0; c < components; c++) {
+            order[c] = c;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(work[b], work[a]));
+        long[] load = new long[taskCount];
+        int[] taskOf = new int[components];
+        for (int c : order) {
+            int lightest = 0;
+            for (int t = 1; t < taskCount; t++) {
+                if (load[t] < load[lightest]) {
+                    lightest = t;
+                }
+            }
+            taskOf[c] = lightest;
+            load[lightest] += work[c];
+        }
+
+        // Statement ranges of each task, kept in program order
+        int[] sizes = new int[taskCount];
+        for (int s = 0; s < statements; s++) {
+            sizes[taskOf[componentOf[s]]] += 2;
+        }
+        int[][] tasks = new int[taskCount][];
+        for (int t = 0; t < taskCount; t++) {
+            tasks[t] = new int[sizes[t]];
+            sizes[t] = 0;
+        }
+        for (int s = 0; s < statements; s++) {
+            int[] task = tasks[taskOf[componentOf[s]]];
+            int at = sizes[taskOf[componentOf[s]]];
+            task[at] = s == 0 ? 0 : ends[s - 1];
+            task[at + 1] = ends[s];
+            sizes[taskOf[componentOf[s]]] += 2;
+        }
+        return new DependencyGraph(program, tasks, components, parallelism);
+    }
+
+    /**
+     * Runs every task on the common fork/join pool. The accumulator must be 0 at the start,
+     * and it is 0 again at the end, just as after a sequential run.
+     * @param memory the interpreter's memory
+     * @return false if a division by zero happened; memory is then restored to what it was,
+     * so that the caller can run sequentially and report the error in order
+     */
+    public boolean run(int[] memory) {
+        int[] before = memory.clone();
+        AtomicBoolean divisionByZero = new AtomicBoolean();
+        List<RecursiveAction> actions = new ArrayList<>(tasks.length);
+        for (int[] task : tasks) {
+            actions.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    if (!runStatements(task, memory)) {
+                        divisionByZero.set(true);
+                    }
+                }
+            });
+        }
+        ForkJoinTask.invokeAll(actions);
+        if (divisionByZero.get()) {
+            System.arraycopy(before, 0, memory, 0, memory.length);
+            return false;
+        }
+        return true;
+    }
+
+    // Runs the statements of one task on its own context over the shared memory. The code is
+    // verified, so the only run-time error it can collect is a division by zero; returns false then.
+    private boolean runStatements(int[] ranges, int[] memory) {
+        ExecutionContext context = new ExecutionContext(memory);
+        context.setQuiet(true);
+        for (int r = 0; r < ranges.length; r += 2) {
+            program.run(context, ranges[r], ranges[r + 1]);
+        }
+        return context.getDiagnostics().isEmpty();
+    }
+
+    // Commands whose operand is a memory address
+    private static boolean hasAddress(int command) {
+        return command == ByteCodeInterpreter.LOAD || command == ByteCodeInterpreter.STORE
+                || command == ByteCodeInterpreter.SUB || command == ByteCodeInterpreter.MULT
+                || command == ByteCodeInterpreter.DIV;
+    }
+
+    private static int find(int[] parent, int s) {
+        while (parent[s] != s) {
+            parent[s] = parent[parent[s]];  // Path halving
+            s = parent[s];
+        }
+        return s;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA != rootB) {
+            parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+    }
+
+    // Number of independent groups of statements
+    public int getComponentCount() {
+        return components;
+    }
+
+    public int getTaskCount() {
+        return tasks.length;
+    }
+
+    // Total instructions over the instructions of the largest component: the most speedup possible
+    public double getParallelism() {
+        return parallelism;
+    }
+}
@@ -0,0 +1,83 @@
+import java.util.Objects;
+
+/**
+ * One error found while compiling or running a script, in a form tools can read: what kind of
+ * error it is, the source line, the identifier involved and the message as it is printed.
+ * @see Parser#getDiagnostics()
+ * @see ExecutionContext#getDiagnostics()
+ */
+public class Diagnostic {
+
+    public enum Kind {
+        // Compile time, reported by the Parser
+        EXPECTING_IDENTIFIER,
+        EXPECTING_ASSIGNMENT,
+        EXPECTING_OPERAND,
+        EXPECTING_CLOSING_PARENTHESIS,
+        UNDEFINED_IDENTIFIER,
+        INVALID_INTEGER,
+        // Run time, reported by Program; BytecodeVerifier finds the last four ahead of time
+        DIVISION_BY_ZERO,
+        ADDRESS_OUT_OF_BOUNDS,
+        EMPTY_STACK,
+        INVALID_COMMAND,
+        MISSING_OPERAND,
+        // The script could not be read
+        IO_ERROR
+    }
+
+    private final Kind kind;
+    private final int line;
+    private final String identifier;
+    private final String message;
+
+    /**
+     * @param kind what went wrong
+     * @param line source line, -1 if unknown
+     * @param identifier identifier involved, or null
+     * @param message the message as it is printed
+     */
+    public Diagnostic(Kind kind, int line, String identifier, String message) {
+        this.kind = kind;
+        this.line = line;
+        this.identifier = identifier;
+        this.message = message;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    // Source line, -1 if unknown
+    public int getLine() {
+        return line;
+    }
+
+    // Identifier involved, or null
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return message;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Diagnostic that = (Diagnostic) o;
+        return line == that.line && kind == that.kind && Objects.equals(identifier, that.identifier)
+                && Objects.equals(message, that.message);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, line, identifier, message);
+    }
+}
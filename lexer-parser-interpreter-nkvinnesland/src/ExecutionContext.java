@@ -0,0 +1,90 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The mutable state of one execution of a Program: accumulator, memory, operand stack and the
+ * index of the next instruction. Programs are shared; every concurrent execution has its own context.
+ * @see Program
+ * @see ProgramExecutor
+ */
+public class ExecutionContext {
+
+    int accumulator;
+    final int[] memory;
+    int[] stack = new int[16];
+    int stackSize = 0;
+    int pc = 0;  // Code index of the next command; 0 between runs
+
+    // When quiet, run-time errors are collected for getDiagnostics() instead of printed
+    private boolean quiet = false;
+    private final ArrayList<Diagnostic> diagnostics = new ArrayList<>();
+
+    public ExecutionContext(int memorySize) {
+        this(new int[memorySize]);
+    }
+
+    // A context that runs on memory it does not own, e.g. the memory DependencyGraph's tasks share
+    ExecutionContext(int[] memory) {
+        this.memory = memory;
+    }
+
+    // Clears the state so that the context can be reused for a fresh run, printing errors again
+    public void reset() {
+        accumulator = 0;
+        Arrays.fill(memory, 0);
+        stackSize = 0;
+        pc = 0;
+        quiet = false;
+        diagnostics.clear();
+    }
+
+    // Prints a run-time error, or collects it when the context is quiet
+    void report(Diagnostic diagnostic) {
+        if (quiet) {
+            diagnostics.add(diagnostic);
+        } else {
+            System.out.println(diagnostic.getMessage());
+        }
+    }
+
+    public void setQuiet(boolean quiet) {
+        this.quiet = quiet;
+    }
+
+    // Run-time errors collected while quiet, since the context was created or reset
+    public List<Diagnostic> getDiagnostics() {
+        return new ArrayList<>(diagnostics);
+    }
+
+    public int getAccumulator() {
+        return accumulator;
+    }
+
+    public int getMemoryValue(int address) {
+        return memory[address];
+    }
+
+    // Sets a memory value before a run, e.g. an input declared with IdTable.declareInput
+    public void setMemoryValue(int address, int value) {
+        memory[address] = value;
+    }
+
+    public int getMemorySize() {
+        return memory.length;
+    }
+
+    // Code index of the next command, 0 when no run is in progress
+    public int getPc() {
+        return pc;
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutionContext{" +
+                "accumulator=" + accumulator +
+                ", memory=" + Arrays.toString(memory) +
+                ", pc=" + pc +
+                '}';
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Flight recorder for ByteCodeInterpreter: keeps the last executed instructions in a ring buffer,
+ * to see what led up to a wrong value or a run-time error without tracing the whole run. Each
+ * record is the pc, the command, the operand and the accumulator after the instruction. The
+ * buffer is a preallocated int array, so recording allocates nothing.
+ * @see ByteCodeInterpreter#setRecorder(ExecutionRecorder)
+ */
+public class ExecutionRecorder {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    // Ints per record: pc, command, operand, accumulator
+    private static final int RECORD = 4;
+
+    private final int[] records;
+    private final int capacity;
+    private int next = 0;        // Index in records where the next record goes
+    private long recorded = 0;   // Records written since the start or the last clear()
+
+    public ExecutionRecorder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    // Keeps the last capacity instructions
+    public ExecutionRecorder(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.records = new int[capacity * RECORD];
+    }
+
+    // Records one executed instruction, overwriting the oldest record once the buffer is full
+    public void record(int pc, int command, int operand, int accumulator) {
+        int[] records = this.records;
+        int at = next;
+        records[at] = pc;
+        records[at + 1] = command;
+        records[at + 2] = operand;
+        records[at + 3] = accumulator;
+        next = at + RECORD == records.length ? 0 : at + RECORD;
+        recorded++;
+    }
+
+    // Number of records held, at most the capacity
+    public int size() {
+        return (int) Math.min(recorded, capacity);
+    }
+
+    // Number of instructions recorded, including the ones overwritten
+    public long getRecordedCount() {
+        return recorded;
+    }
+
+    // Field of the i-th record held, 0 being the oldest
+    private int field(int i, int offset) {
+        int oldest = recorded > capacity ? next : 0;
+        return records[(oldest + i * RECORD) % records.length + offset];
+    }
+
+    public int getPc(int i) {
+        return field(i, 0);
+    }
+
+    public int getCommand(int i) {
+        return field(i, 1);
+    }
+
+    public int getOperand(int i) {
+        return field(i, 2);
+    }
+
+    public int getAccumulator(int i) {
+        return field(i, 3);
+    }
+
+    // Forgets every record
+    public void clear() {
+        next = 0;
+        recorded = 0;
+    }
+
+    /**
+     * The records held, oldest first, one per line, e.g. "pc 12, line 3: DIV 1, accumulator 7"
+     * @param lines maps each pc to its source line; may be null
+     * @return the dump
+     */
+    public String dump(LineTable lines) {
+        StringBuilder dump = new StringBuilder("Flight recorder: last " + size() + " of " + recorded + " instructions");
+        for (int i = 0; i < size(); i++) {
+            int line = lines == null ? -1 : lines.getLine(getPc(i));
+            dump.append("\npc ").append(getPc(i))
+                    .append(", line ").append(line < 0 ? "?" : String.valueOf(line))
+                    .append(": ").append(ByteCodeInterpreter.commandName(getCommand(i)))
+                    .append(' ').append(getOperand(i))
+                    .append(", accumulator ").append(getAccumulator(i));
+        }
+        return dump.toString();
+    }
+}
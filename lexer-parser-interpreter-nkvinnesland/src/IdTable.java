@@ -1,46 +1,222 @@
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Objects;
+import java.util.HashSet;
 
+/**
+ * Symbol table: gives every identifier a dense address, 0, 1, 2, ... in order of first definition.
+ * Lookups go through a primitive open-addressing hash table (linear probing), and the names are
+ * kept once, by address, for reporting. The Parser looks identifiers up straight from the source
+ * range the Lexer found, with the hash the Lexer computed while scanning, so no String is made for
+ * an identifier that is already in the table. The hash is String.hashCode(), so lookups by String
+ * and by range agree.
+ */
 public class IdTable {
-    private HashMap<String, Integer> idMap;
+
+    // Open-addressing table: address + 1 per slot, 0 for an empty slot. Kept at most half full.
+    private int[] slots = new int[16];
+
+    // Name and hash of each identifier, by address
+    private String[] names = new String[8];
+    private int[] hashes = new int[8];
+    private int size = 0;
+
+    // Identifiers whose final value the caller wants, and where that value ends up once
+    // SlotAllocator has let other variables share memory slots
+    private HashSet<String> outputs;
+    private HashMap<String, Integer> outputAddresses;
+
+    // Identifiers defined before the program runs, e.g. bound to input columns by BatchExecutor
+    private HashSet<String> inputs;
 
     public IdTable(){
-        idMap = new HashMap<>();
+        outputs = new HashSet<>();
+        outputAddresses = new HashMap<>();
+        inputs = new HashSet<>();
     }
 
-    public void addEntry(String id){
-        if (!idMap.containsKey(id)){
-            int address = idMap.size();
-            idMap.put(id, address);
+    // Adds an identifier if it is new; returns its address either way
+    public int addEntry(String id){
+        int hash = id.hashCode();
+        int mask = slots.length - 1;
+        int slot = mix(hash) & mask;
+        for (int entry = slots[slot]; entry != 0; entry = slots[slot]) {
+            if (hashes[entry - 1] == hash && names[entry - 1].equals(id)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int address = size++;
+        if (address == names.length) {
+            names = Arrays.copyOf(names, address * 2);
+            hashes = Arrays.copyOf(hashes, address * 2);
+        }
+        names[address] = id;
+        hashes[address] = hash;
+        slots[slot] = address + 1;
+        if (2 * size > slots.length) {
+            rehash(slots.length * 2);
         }
+        return address;
     }
 
     public int getAddress(String id){
-        if (idMap.containsKey((id))){
-            return idMap.get(id);
-        } else {
-            return -1;
+        return getAddress(id, 0, id.length(), id.hashCode());
+    }
+
+    /**
+     * Address of the identifier in buffer[start, start + length), without making a String of it
+     * @param hash the String.hashCode() of the identifier, e.g. the one the Lexer computed
+     * @return the address, or -1 if the identifier is not in the table
+     */
+    public int getAddress(String buffer, int start, int length, int hash){
+        int mask = slots.length - 1;
+        for (int slot = mix(hash) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int address = slots[slot] - 1;
+            if (hashes[address] == hash && names[address].length() == length
+                    && names[address].regionMatches(0, buffer, start, length)) {
+                return address;
+            }
+        }
+        return -1;
+    }
+
+    // Same for an identifier in a char array, e.g. the window of a streaming Lexer
+    public int getAddress(char[] buffer, int start, int length, int hash){
+        int mask = slots.length - 1;
+        for (int slot = mix(hash) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int address = slots[slot] - 1;
+            if (hashes[address] == hash && matches(names[address], buffer, start, length)) {
+                return address;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matches(String name, char[] buffer, int start, int length){
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != buffer[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Spreads String hashes, whose low bits are poor for short identifiers, over the slots
+    private static int mix(int hash){
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void rehash(int capacity){
+        int[] table = new int[capacity];
+        int mask = capacity - 1;
+        for (int address = 0; address < size; address++) {
+            int slot = mix(hashes[address]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = address + 1;
+        }
+        slots = table;
+    }
+
+    // Number of identifiers, which is also the memory size a program needs
+    public int size(){
+        return size;
+    }
+
+    // Name of the identifier at an address
+    public String getName(int address){
+        return names[address];
+    }
+
+    // Identifiers indexed by their address
+    public String[] getIdentifiers(){
+        return Arrays.copyOf(names, size);
+    }
+
+    // Declares an input: the program may read it without assigning it first. Call before parsing.
+    public void declareInput(String id){
+        addEntry(id);
+        inputs.add(id);
+    }
+
+    public boolean isInput(String id){
+        return inputs.contains(id);
+    }
+
+    // Marks an identifier as an output, so its final value is kept after slot reuse
+    public void markOutput(String id){
+        outputs.add(id);
+    }
+
+    public boolean isOutput(String id){
+        return outputs.contains(id);
+    }
+
+    public boolean hasOutputs(){
+        return !outputs.isEmpty();
+    }
+
+    // Records where SlotAllocator put the final value of an output
+    public void setOutputAddress(String id, int address){
+        outputAddresses.put(id, address);
+    }
+
+    // Address holding the final value of an identifier: its slot after slot reuse, else its own address
+    public int getOutputAddress(String id){
+        if (outputAddresses.containsKey(id)){
+            return outputAddresses.get(id);
         }
+        if (!outputAddresses.isEmpty() && !outputs.contains(id)){
+            return -1;  // Its slot was reused by other variables
+        }
+        return getAddress(id);
     }
 
+    /**
+     * Final value of a variable after the program has run
+     * @param id identifier, which must be an output if slots were reused
+     * @param interpreter the interpreter that ran the program
+     * @return the value of the variable
+     */
+    public int getValue(String id, ByteCodeInterpreter interpreter){
+        int address = getOutputAddress(id);
+        if (address == -1){
+            throw new IllegalArgumentException("Identifier '" + id + "' is not an output");
+        }
+        return interpreter.getMemoryValue(address);
+    }
+
+    // Lists the identifiers in address order, which is the order they were first defined
     public String toString(){
         StringBuilder sb = new StringBuilder();
-        for (String id : idMap.keySet()){
-            sb.append(id).append(": ").append(idMap.get(id)).append("\n");
+        for (int address = 0; address < size; address++) {
+            sb.append(names[address]).append(": ").append(address).append("\n");
         }
         return "ID Table: \n" + sb.toString();
     }
 
+    // Equal when the same identifiers have the same addresses. Like hashCode(), this covers only the
+    // identifier to address pairs, not which identifiers are inputs or outputs.
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         IdTable idTable = (IdTable) o;
-        return Objects.equals(idMap, idTable.idMap);
+        return Arrays.equals(names, 0, size, idTable.names, 0, idTable.size);
     }
 
+    // Same value as the hashCode of the map from identifier to address; inputs and outputs are not part of it
     @Override
     public int hashCode() {
-        return Objects.hashCode(idMap);
+        int hash = 0;
+        for (int address = 0; address < size; address++) {
+            hash += names[address].hashCode() ^ address;
+        }
+        return hash;
     }
 }
@@ -0,0 +1,304 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps a program compiled while its source is edited, e.g. by an editor that validates on every
+ * keystroke. An edit re-lexes and re-parses only the statements on the lines it touches. The code
+ * of every other statement is kept and the new code is patched in, and the IdTable addresses stay
+ * the same. This works as long as the edit does not change which statement first defines an
+ * identifier. Otherwise, or while the program is invalid, the whole source is compiled again.
+ * After every edit the result is the same as compiling the new source from scratch.
+ * @see Program#compile(String, String...)
+ */
+public class IncrementalCompiler {
+
+    // Following statements added to the re-parsed range when the edited statements do not end on a statement boundary
+    private static final int MAX_EXTRA_STATEMENTS = 2;
+
+    private final String[] inputs;
+    private String source;
+    private boolean valid;
+    private String error;
+
+    // The program while it is valid
+    private int[] code = new int[0];
+    private int codeLength = 0;
+    private IdTable idTable;
+
+    // Statement s starts at source offset statementStarts[s] and code index statementCode[s], and assigns
+    // definitions[s]. Entry statementCount holds the source length and the code length.
+    private int[] statementStarts = new int[1];
+    private int[] statementCode = new int[1];
+    private String[] definitions = new String[1];
+    private int statementCount = 0;
+
+    // Statement that first assigns each identifier, -1 for inputs
+    private HashMap<String, Integer> firstDefinitions = new HashMap<>();
+
+    private int fullCompiles = 0;
+
+    /**
+     * Compiles the initial source
+     * @param source the program text
+     * @param inputs identifiers the program may read without assigning them, see IdTable.declareInput
+     */
+    public IncrementalCompiler(String source, String... inputs) {
+        this.source = source;
+        this.inputs = inputs.clone();
+        compileAll();
+    }
+
+    /**
+     * Applies a text edit and brings the compiled program up to date
+     * @param offset where the edit starts in the current source
+     * @param removedLength number of characters removed at offset
+     * @param inserted text inserted at offset
+     * @return true if the edited program is valid
+     */
+    public boolean edit(int offset, int removedLength, String inserted) {
+        if (offset < 0 || removedLength < 0 || offset + removedLength > source.length()) {
+            throw new IllegalArgumentException("Edit is outside the source");
+        }
+        String old = source;
+        source = old.substring(0, offset) + inserted + old.substring(offset + removedLength);
+        if (!valid || !patch(old, offset, removedLength, inserted)) {
+            compileAll();
+        }
+        return valid;
+    }
+
+    // Lexes and parses the whole source
+    private void compileAll() {
+        fullCompiles++;
+        TokenBuffer tokens = Lexer.fromSource(source).tokenize();
+        Parser.Partition all = new Parser.Partition(tokens, 0, tokens.size() - 1);
+        all.invoke();
+        if (!all.valid || all.statementCount == 0 || !definedBeforeUse(all)) {
+            // Parse again the ordinary way for the exact error
+            Parser parser = new Parser(tokens, 0);
+            parser.setQuiet(true);
+            for (String input : inputs) {
+                parser.getIdTable().declareInput(input);
+            }
+            parser.parseProgram();
+            error = parser.getError();
+            valid = false;
+            return;
+        }
+
+        idTable = new IdTable();
+        firstDefinitions = new HashMap<>();
+        for (String input : inputs) {
+            idTable.declareInput(input);
+            firstDefinitions.put(input, -1);
+        }
+        for (int local : all.definitions) {
+            idTable.addEntry(all.names.get(local));
+        }
+        statementCount = all.statementCount;
+        statementStarts = new int[statementCount + 1];
+        statementCode = new int[statementCount + 1];
+        definitions = new String[statementCount + 1];
+        for (int s = 0; s < statementCount; s++) {
+            int token = all.statements[2 * s];
+            statementStarts[s] = tokens.getStart(token);
+            statementCode[s] = all.statements[2 * s + 1];
+            definitions[s] = definedBy(tokens, token);
+            firstDefinitions.putIfAbsent(definitions[s], s);
+        }
+        code = resolve(all);
+        codeLength = code.length;
+        statementStarts[statementCount] = source.length();
+        statementCode[statementCount] = codeLength;
+        valid = true;
+        error = null;
+    }
+
+    // True if no identifier of the partition is read before it is assigned, unless it is an input
+    private boolean definedBeforeUse(Parser.Partition part) {
+        for (int local = 0; local < part.names.size(); local++) {
+            if (part.firstUses[local] < part.firstDefinitions[local] && !Arrays.asList(inputs).contains(part.names.get(local))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Re-lexes and re-parses the statements on the lines the edit touched
+     * @return false if the whole source has to be compiled again
+     */
+    private boolean patch(String old, int offset, int removedLength, String inserted) {
+        int shift = inserted.length() - removedLength;
+        int lineStart = old.lastIndexOf('\n', offset - 1) + 1;
+        int lineEnd = old.indexOf('\n', offset + removedLength);
+        lineEnd = lineEnd < 0 ? old.length() : lineEnd + 1;
+
+        // From the statement holding the last token before the edited lines, which new tokens could
+        // continue, to the first statement after them. The range has to parse into whole statements;
+        // if it does not, it takes in up to MAX_EXTRA_STATEMENTS more.
+        int a = statementAt(lineStart - 1);
+        int start = a == 0 ? 0 : statementStarts[a];  // Text before the first statement may have been edited
+        int b = a + 1;
+        while (statementStarts[b] < lineEnd) {
+            b++;
+        }
+        Parser.Partition part = null;
+        for (int extra = 0; extra <= MAX_EXTRA_STATEMENTS && b <= statementCount; extra++, b++) {
+            part = parse(start, statementStarts[b] + shift);
+            if (part.valid) {
+                break;
+            }
+        }
+        if (part == null || !part.valid || part.statementCount + statementCount - (b - a) == 0) {
+            return false;
+        }
+
+        // Addresses stay the same only if every identifier involved was first defined before the edit
+        for (int s = a; s < b; s++) {
+            if (firstDefinitions.get(definitions[s]) >= a) {
+                return false;
+            }
+        }
+        for (String name : part.names) {
+            Integer definition = firstDefinitions.get(name);
+            if (definition == null || definition >= a) {
+                return false;
+            }
+        }
+
+        // Patch the code of statements [a, b) and shift the statements after them
+        int[] region = resolve(part);
+        int codeStart = statementCode[a];
+        int codeEnd = statementCode[b];
+        int codeShift = region.length - (codeEnd - codeStart);
+        if (codeLength + codeShift > code.length) {
+            code = Arrays.copyOf(code, Math.max(codeLength + codeShift, code.length * 2));
+        }
+        System.arraycopy(code, codeEnd, code, codeEnd + codeShift, codeLength - codeEnd);
+        System.arraycopy(region, 0, code, codeStart, region.length);
+        codeLength += codeShift;
+
+        int statementShift = part.statementCount - (b - a);
+        int count = statementCount + statementShift;
+        if (count + 1 > statementStarts.length) {
+            int capacity = Math.max(count + 1, statementStarts.length * 2);
+            statementStarts = Arrays.copyOf(statementStarts, capacity);
+            statementCode = Arrays.copyOf(statementCode, capacity);
+            definitions = Arrays.copyOf(definitions, capacity);
+        }
+        System.arraycopy(statementStarts, b, statementStarts, b + statementShift, statementCount + 1 - b);
+        System.arraycopy(statementCode, b, statementCode, b + statementShift, statementCount + 1 - b);
+        System.arraycopy(definitions, b, definitions, b + statementShift, statementCount + 1 - b);
+        for (int s = b + statementShift; s <= count; s++) {
+            statementStarts[s] += shift;
+            statementCode[s] += codeShift;
+        }
+        for (int i = 0; i < part.statementCount; i++) {
+            int token = part.statements[2 * i];
+            statementStarts[a + i] = part.tokens.getStart(token);
+            statementCode[a + i] = codeStart + part.statements[2 * i + 1];
+            definitions[a + i] = definedBy(part.tokens, token);
+        }
+        statementCount = count;
+        if (statementShift != 0) {
+            for (Map.Entry<String, Integer> definition : firstDefinitions.entrySet()) {
+                if (definition.getValue() >= b) {
+                    definition.setValue(definition.getValue() + statementShift);
+                }
+            }
+        }
+        return true;
+    }
+
+    // Lexes source [start, end) and parses it as whole statements; the tokens end with an EOF token
+    private Parser.Partition parse(int start, int end) {
+        Lexer lexer = new Lexer(source, start, end);
+        TokenBuffer tokens = new TokenBuffer(lexer);
+        while (lexer.scan() != Lexer.EOFKIND) {
+            tokens.add(lexer.tokenKind, lexer.tokenStart, lexer.tokenLength, lexer.tokenLine, lexer.tokenValue);
+        }
+        tokens.add(Lexer.EOFKIND, end, 0, lexer.lineNumber);  // Ends an expression just like the next statement would
+        Parser.Partition part = new Parser.Partition(tokens, 0, tokens.size() - 1);
+        part.invoke();
+        return part;
+    }
+
+    // Code of a partition with its local identifier numbers replaced by IdTable addresses
+    private int[] resolve(Parser.Partition part) {
+        int[] addresses = new int[part.names.size()];
+        for (int local = 0; local < addresses.length; local++) {
+            addresses[local] = idTable.getAddress(part.names.get(local));
+        }
+        int[] resolved = part.code.clone();
+        for (int i = 0; i + 1 < resolved.length; i += 2) {
+            if (Parser.hasAddress(resolved[i])) {
+                resolved[i + 1] = addresses[resolved[i + 1]];
+            }
+        }
+        return resolved;
+    }
+
+    // Identifier assigned by the statement starting at token start
+    private static String definedBy(TokenBuffer tokens, int start) {
+        return tokens.getKind(start) == Lexer.UNKNOWNKIND ? "UNKNOWN" : tokens.getLexeme(start);
+    }
+
+    // Last statement starting at or before source offset position, or the first statement
+    private int statementAt(int position) {
+        int low = 0;
+        int high = statementCount - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (statementStarts[middle] <= position) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    // First error of the current source, as Parser prints it, or null while it is valid
+    public String getError() {
+        return error;
+    }
+
+    // The code of the current source, only while it is valid
+    public int[] getCode() {
+        if (!valid) {
+            throw new IllegalStateException("Invalid program");
+        }
+        return Arrays.copyOf(code, codeLength);
+    }
+
+    // The IdTable of the current source, only while it is valid
+    public IdTable getIdTable() {
+        if (!valid) {
+            throw new IllegalStateException("Invalid program");
+        }
+        return idTable;
+    }
+
+    // The current program, the same one Program.compile would give for getSource()
+    public Program toProgram() {
+        if (!valid) {
+            throw new IllegalArgumentException("Invalid program");
+        }
+        return new Program(getCode(), idTable.getIdentifiers(), idTable.size());
+    }
+
+    // Number of times the whole source was compiled, including the first time
+    public int getFullCompileCount() {
+        return fullCompiles;
+    }
+}
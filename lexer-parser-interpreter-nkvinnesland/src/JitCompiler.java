@@ -0,0 +1,400 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Second execution tier for ByteCodeInterpreter. Translates a program into a JVM class whose
+ * methods keep the accumulator and the operand stack in locals, and loads it as a hidden class
+ * so that HotSpot compiles it like any other Java code.
+ * Only code that passes BytecodeVerifier and leaves the operand stack balanced is compiled.
+ * Anything else, including programs too large for the class file limits, returns null and
+ * stays in the interpreter.
+ * @see ByteCodeInterpreter
+ */
+public class JitCompiler {
+
+    /**
+     * A compiled program. run() has the effect of one ByteCodeInterpreter.run() on the given memory.
+     */
+    public interface CompiledProgram {
+        int run(int accumulator, int[] memory);
+    }
+
+    // A method is closed at the first statement boundary past this many bytes of JVM code. HotSpot
+    // leaves methods over 8000 bytes in its own interpreter, so chunks have to stay well below that.
+    private static final int CHUNK_BYTES = 2000;
+    private static final int MAX_METHOD_BYTES = 65535;
+    private static final int MAX_CHUNKS = 10000;
+    // Calls per dispatch method: 6 bytes each, so run() and the group methods stay under 8000 bytes
+    // too. Over this many chunks, run() calls group methods that each call this many chunks.
+    static final int CALLS_PER_METHOD = 1000;
+    private static final int MAX_CONSTANTS = 65000;
+
+    // Operand stack entries live in locals 2 and up; deeper programs would need wide instructions
+    private static final int MAX_STACK_DEPTH = 200;
+
+    // JVM opcodes used by the translation
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC = 0x12;
+    private static final int LDC_W = 0x13;
+    private static final int ILOAD = 0x15;
+    private static final int ILOAD_0 = 0x1a;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int IALOAD = 0x2e;
+    private static final int ISTORE = 0x36;
+    private static final int ISTORE_0 = 0x3b;
+    private static final int IASTORE = 0x4f;
+    private static final int SWAP = 0x5f;
+    private static final int IADD = 0x60;
+    private static final int ISUB = 0x64;
+    private static final int IMUL = 0x68;
+    private static final int IDIV = 0x6c;
+    private static final int IRETURN = 0xac;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+
+    private static final String CLASS_NAME = "JitProgram";
+    private static final String CHUNK_DESCRIPTOR = "(I[I)I";
+
+    /**
+     * Compiles the first length ints of code for a memory of memorySize ints
+     * @return the compiled program, or null if it has to stay in the interpreter
+     */
+    public static CompiledProgram compile(int[] code, int length, int memorySize) {
+        if (!BytecodeVerifier.verify(code, length, memorySize).isEmpty()) {
+            return null;  // The interpreter reports the errors at run time
+        }
+        try {
+            byte[] classFile = new JitCompiler().translate(code, length, memorySize);
+            if (classFile == null) {
+                return null;
+            }
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classFile, true);
+            return (CompiledProgram) lookup.lookupClass().getConstructor().newInstance();
+        } catch (IOException | ReflectiveOperationException | IllegalArgumentException | LinkageError e) {
+            return null;  // A class the JVM rejects (ClassFormatError, VerifyError) is no worse than staying interpreted
+        }
+    }
+
+    // Constant pool of the class being written
+    private final ByteArrayOutputStream constants = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(constants);
+    private final HashMap<String, Integer> utf8Entries = new HashMap<>();
+    private final HashMap<Integer, Integer> intEntries = new HashMap<>();
+    private int poolCount = 1;
+
+    private int thisClass, objectInit, divide, chunkDescriptor;
+
+    // Returns the class file, or null if the program cannot be compiled
+    private byte[] translate(int[] code, int length, int memorySize) throws IOException {
+        thisClass = classEntry(CLASS_NAME);
+        int objectClass = classEntry("java/lang/Object");
+        int programInterface = classEntry(CompiledProgram.class.getName().replace('.', '/'));
+        objectInit = methodEntry(objectClass, "<init>", "()V");
+        divide = methodEntry(classEntry("ByteCodeInterpreter"), "divide", "(II)I");
+        chunkDescriptor = utf8(CHUNK_DESCRIPTOR);
+
+        ArrayList<byte[]> chunks = new ArrayList<>();
+        ArrayList<Integer> chunkLocals = new ArrayList<>();
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+        chunk.write(ILOAD_0);  // The accumulator is kept on the JVM stack inside a chunk
+        int depth = 0;
+        int maxDepth = 0;
+
+        for (int i = 0; i < length; i += 2) {
+            int command = code[i];
+            int operand = code[i + 1];
+            switch (command) {
+                case ByteCodeInterpreter.LOAD:
+                    loadMemory(chunk, operand);
+                    chunk.write(IADD);
+                    break;
+                case ByteCodeInterpreter.LOADI:
+                    pushInt(chunk, operand);
+                    chunk.write(IADD);
+                    break;
+                case ByteCodeInterpreter.STORE:
+                    chunk.write(ISTORE_0);
+                    chunk.write(ALOAD_1);
+                    pushInt(chunk, operand);
+                    chunk.write(ILOAD_0);
+                    chunk.write(IASTORE);
+                    chunk.write(ICONST_0);  // STORE clears the accumulator
+                    break;
+                case ByteCodeInterpreter.SUB:
+                    loadMemory(chunk, operand);
+                    chunk.write(ISUB);
+                    break;
+                case ByteCodeInterpreter.SUBI:
+                    pushInt(chunk, operand);
+                    chunk.write(ISUB);
+                    break;
+                case ByteCodeInterpreter.MULT:
+                    loadMemory(chunk, operand);
+                    chunk.write(IMUL);
+                    break;
+                case ByteCodeInterpreter.MULTI:
+                    pushInt(chunk, operand);
+                    chunk.write(IMUL);
+                    break;
+                case ByteCodeInterpreter.DIV:
+                    loadMemory(chunk, operand);
+                    invokeStatic(chunk, divide);
+                    break;
+                case ByteCodeInterpreter.DIVI:
+                    pushInt(chunk, operand);
+                    if (operand == 0) {
+                        invokeStatic(chunk, divide);  // Prints the run-time error
+                    } else {
+                        chunk.write(IDIV);
+                    }
+                    break;
+                case ByteCodeInterpreter.PUSH:
+                    if (depth == MAX_STACK_DEPTH) {
+                        return null;
+                    }
+                    chunk.write(ISTORE);
+                    chunk.write(2 + depth++);
+                    chunk.write(ICONST_0);
+                    maxDepth = Math.max(maxDepth, depth);
+                    break;
+                case ByteCodeInterpreter.POPADD:
+                case ByteCodeInterpreter.POPSUB:
+                case ByteCodeInterpreter.POPMULT:
+                case ByteCodeInterpreter.POPDIV:
+                    chunk.write(ILOAD);
+                    chunk.write(2 + --depth);
+                    if (command == ByteCodeInterpreter.POPADD) {
+                        chunk.write(IADD);
+                    } else if (command == ByteCodeInterpreter.POPMULT) {
+                        chunk.write(IMUL);
+                    } else {
+                        chunk.write(SWAP);  // The saved value is the left operand
+                        if (command == ByteCodeInterpreter.POPSUB) {
+                            chunk.write(ISUB);
+                        } else {
+                            invokeStatic(chunk, divide);
+                        }
+                    }
+                    break;
+                default:
+                    return null;  // Not reached for verified code
+            }
+
+            if (command == ByteCodeInterpreter.STORE && depth == 0 && chunk.size() >= CHUNK_BYTES) {
+                chunk.write(IRETURN);
+                chunks.add(chunk.toByteArray());
+                chunkLocals.add(2 + maxDepth);
+                chunk = new ByteArrayOutputStream();
+                chunk.write(ILOAD_0);
+                maxDepth = 0;
+            }
+        }
+        if (depth != 0) {
+            return null;  // Values left on the interpreter's stack would be visible to the next run
+        }
+        chunk.write(IRETURN);
+        chunks.add(chunk.toByteArray());
+        chunkLocals.add(2 + maxDepth);
+
+        if (chunks.size() > MAX_CHUNKS) {
+            return null;
+        }
+        for (byte[] body : chunks) {
+            if (body.length > MAX_METHOD_BYTES) {
+                return null;  // A single statement too long for one method
+            }
+        }
+
+        // run() calls the chunks in order, threading the accumulator through them, or calls groups
+        // of CALLS_PER_METHOD chunks when there are more than that
+        ArrayList<byte[]> groups = new ArrayList<>();
+        String callee = "c";
+        int callees = chunks.size();
+        if (callees > CALLS_PER_METHOD) {
+            for (int first = 0; first < chunks.size(); first += CALLS_PER_METHOD) {
+                groups.add(dispatch("c", first, Math.min(first + CALLS_PER_METHOD, chunks.size()), 0));
+            }
+            callee = "g";
+            callees = groups.size();
+        }
+        byte[] run = dispatch(callee, 0, callees, 1);
+
+        ByteArrayOutputStream init = new ByteArrayOutputStream();
+        init.write(ALOAD_0);
+        init.write(INVOKESPECIAL);
+        writeShort(init, objectInit);
+        init.write(RETURN);
+
+        int initName = utf8("<init>");
+        int initDescriptor = utf8("()V");
+        int runName = utf8("run");
+        int codeName = utf8("Code");
+        int[] chunkNames = new int[chunks.size()];
+        for (int c = 0; c < chunks.size(); c++) {
+            chunkNames[c] = utf8("c" + c);
+        }
+        int[] groupNames = new int[groups.size()];
+        for (int g = 0; g < groups.size(); g++) {
+            groupNames[g] = utf8("g" + g);
+        }
+        if (poolCount > MAX_CONSTANTS) {
+            return null;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(49);  // Java 5 format: the verifier infers types, so no stack map frames are needed
+        out.writeShort(poolCount);
+        pool.flush();
+        constants.writeTo(out);
+        out.writeShort(0x0031);  // ACC_PUBLIC | ACC_FINAL | ACC_SUPER
+        out.writeShort(thisClass);
+        out.writeShort(objectClass);
+        out.writeShort(1);
+        out.writeShort(programInterface);
+        out.writeShort(0);  // No fields
+
+        out.writeShort(2 + groups.size() + chunks.size());
+        writeMethod(out, 0x0001, initName, initDescriptor, codeName, 1, 1, init.toByteArray());
+        writeMethod(out, 0x0001, runName, chunkDescriptor, codeName, 2, 3, run);
+        for (int g = 0; g < groups.size(); g++) {
+            writeMethod(out, 0x000A, groupNames[g], chunkDescriptor, codeName, 2, 2, groups.get(g));
+        }
+        for (int c = 0; c < chunks.size(); c++) {
+            // ACC_PRIVATE | ACC_STATIC; locals are the accumulator, memory and the operand stack
+            writeMethod(out, 0x000A, chunkNames[c], chunkDescriptor, codeName, 4, chunkLocals.get(c), chunks.get(c));
+        }
+        out.writeShort(0);  // No class attributes
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    // Body of a method that calls prefix + first to prefix + (end - 1) in order, passing the accumulator
+    // from one to the next. The accumulator and memory are in locals base and base + 1: 1 in run(),
+    // whose local 0 is this, and 0 in the static group methods.
+    private byte[] dispatch(String prefix, int first, int end, int base) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (int c = first; c < end; c++) {
+            body.write(ILOAD_0 + base);
+            body.write(ALOAD_1 + base);
+            invokeStatic(body, methodEntry(thisClass, prefix + c, CHUNK_DESCRIPTOR));
+            body.write(ISTORE_0 + base);
+        }
+        body.write(ILOAD_0 + base);
+        body.write(IRETURN);
+        return body.toByteArray();
+    }
+
+    // Pushes memory[address] onto the JVM stack
+    private void loadMemory(ByteArrayOutputStream body, int address) {
+        body.write(ALOAD_1);
+        pushInt(body, address);
+        body.write(IALOAD);
+    }
+
+    // Pushes an int constant with the shortest instruction that holds it
+    private void pushInt(ByteArrayOutputStream body, int value) {
+        if (value >= -1 && value <= 5) {
+            body.write(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            body.write(BIPUSH);
+            body.write(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            body.write(SIPUSH);
+            writeShort(body, value);
+        } else {
+            int index = intEntry(value);
+            if (index <= 0xFF) {
+                body.write(LDC);
+                body.write(index);
+            } else {
+                body.write(LDC_W);
+                writeShort(body, index);
+            }
+        }
+    }
+
+    private void invokeStatic(ByteArrayOutputStream body, int method) {
+        body.write(INVOKESTATIC);
+        writeShort(body, method);
+    }
+
+    private static void writeShort(ByteArrayOutputStream body, int value) {
+        body.write(value >>> 8);
+        body.write(value);
+    }
+
+    private static void writeMethod(DataOutputStream out, int access, int name, int descriptor, int codeName,
+                                    int maxStack, int maxLocals, byte[] body) throws IOException {
+        out.writeShort(access);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);  // The Code attribute
+        out.writeShort(codeName);
+        out.writeInt(12 + body.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(body.length);
+        out.write(body);
+        out.writeShort(0);  // No exception handlers
+        out.writeShort(0);  // No attributes
+    }
+
+    // Constant pool entries, each written once
+
+    private int utf8(String value) throws IOException {
+        Integer index = utf8Entries.get(value);
+        if (index == null) {
+            pool.writeByte(1);
+            pool.writeUTF(value);
+            index = poolCount++;
+            utf8Entries.put(value, index);
+        }
+        return index;
+    }
+
+    private int classEntry(String name) throws IOException {
+        int nameIndex = utf8(name);
+        pool.writeByte(7);
+        pool.writeShort(nameIndex);
+        return poolCount++;
+    }
+
+    private int methodEntry(int owner, String name, String descriptor) throws IOException {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        pool.writeByte(12);  // NameAndType
+        pool.writeShort(nameIndex);
+        pool.writeShort(descriptorIndex);
+        int nameAndType = poolCount++;
+        pool.writeByte(10);  // Methodref
+        pool.writeShort(owner);
+        pool.writeShort(nameAndType);
+        return poolCount++;
+    }
+
+    private int intEntry(int value) {
+        Integer index = intEntries.get(value);
+        if (index == null) {
+            try {
+                pool.writeByte(3);
+                pool.writeInt(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);  // Never thrown by a ByteArrayOutputStream
+            }
+            index = poolCount++;
+            intEntries.put(value, index);
+        }
+        return index;
+    }
+}
@@ -1,10 +1,24 @@
 import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Objects;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Class to build an array of Tokens from an input file
@@ -26,6 +40,87 @@ public class Lexer {
     public static final String ASSMTTOKEN = "ASSMT";
     public static final String PLUSTOKEN = "PLUS";
     public static final String EOFTOKEN = "EOF";
+    public static final String LPARENTOKEN = "LPAREN";
+    public static final String RPARENTOKEN = "RPAREN";
+
+    // Integer token kinds produced by scan() and stored in TokenBuffer, so that the Parser
+    // can compare ints instead of strings. An unknown character keeps its old ID UNKNOWN view.
+    public static final int INTKIND = 0;
+    public static final int DIVKIND = 1;
+    public static final int SUBKIND = 2;
+    public static final int MULTKIND = 3;
+    public static final int IDKIND = 4;
+    public static final int ASSMTKIND = 5;
+    public static final int PLUSKIND = 6;
+    public static final int EOFKIND = 7;
+    public static final int UNKNOWNKIND = 8;
+    public static final int LPARENKIND = 9;
+    public static final int RPARENKIND = 10;
+    private static final String[] TYPES = {
+            INTTOKEN, DIVTOKEN, SUBTOKEN, MULTTOKEN, IDTOKEN, ASSMTTOKEN, PLUSTOKEN, EOFTOKEN, IDTOKEN,
+            LPARENTOKEN, RPARENTOKEN
+    };
+
+    // The token found by the last call to scan()
+    int tokenKind = EOFKIND;
+    int tokenStart = 0;
+    int tokenLength = 0;
+    int tokenLine = 1;
+    // Computed while scanning: the String.hashCode() of an identifier, for IdTable lookups, or the value
+    // of an integer of at most MAX_INLINE_DIGITS digits. 0 for other tokens and for longer integers.
+    int tokenValue = 0;
+
+    // Streaming mode: the file is decoded chunk by chunk into a sliding window
+    // instead of being held in buffer. index stays an absolute character position.
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    private FileChannel channel;
+    private CharsetDecoder decoder;
+    private ByteBuffer chunk;
+    private char[] window;
+    private int windowBase = 0;    // absolute position of window[0]
+    private int windowLength = 0;  // number of valid chars in window
+    private int mark = -1;         // first absolute position a refill must keep, -1 for index
+
+    // In-memory mode lexes buffer up to limit; chunks of tokenizeParallel stop at a line boundary
+    private int limit = Integer.MAX_VALUE;
+
+    // Smallest chunk of the input tokenizeParallel gives to one task
+    public static final int MIN_PARALLEL_CHUNK = 64 * 1024;
+
+    // Integers with at most this many digits always fit in an int, so scan() leaves their value in tokenValue
+    public static final int MAX_INLINE_DIGITS = 9;
+
+    // ASCII fast path: when the in-memory input is pure ASCII it is also kept as bytes, and scanAscii()
+    // classifies each byte with one table lookup instead of the Character methods. Runs of spaces,
+    // letters and digits are found eight bytes at a time in a long (SWAR). Other input takes the
+    // Unicode-aware path, which gives the same tokens.
+    private byte[] ascii;
+    private static final byte SPACE = -1;    // Whitespace other than '\n'
+    private static final byte NEWLINE = -2;
+    private static final byte[] ASCII_CLASSES = new byte[128];  // Token kind of each character, or SPACE or NEWLINE
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long SPACES = 0x2020202020202020L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    static {
+        for (char c = 0; c < 128; c++) {
+            byte kind;
+            if (c == '\n') {
+                kind = NEWLINE;
+            } else if (Character.isWhitespace(c)) {
+                kind = SPACE;
+            } else if (Character.isLetter(c)) {
+                kind = IDKIND;
+            } else if (Character.isDigit(c)) {
+                kind = INTKIND;
+            } else {
+                int index = "=+*/-()".indexOf(c);
+                kind = (byte) (index < 0 ? UNKNOWNKIND
+                        : new int[]{ASSMTKIND, PLUSKIND, MULTKIND, DIVKIND, SUBKIND, LPARENKIND, RPARENKIND}[index]);
+            }
+            ASCII_CLASSES[c] = kind;
+        }
+    }
 
     /**
      * Call getInput to get the file data into our buffer
@@ -35,6 +130,58 @@ public class Lexer {
         getInput(fileName);
     }
 
+    /**
+     * Opens the file either fully in memory or, when streaming is set, through a
+     * chunked channel so that peak memory does not depend on the size of the file
+     * @param fileName the file we open
+     * @param streaming true to read the file through a bounded window
+     */
+    public Lexer(String fileName, boolean streaming) {
+        this(fileName, streaming, DEFAULT_CHUNK_SIZE);
+    }
+
+    // Streaming constructor with an explicit chunk size, mostly useful to force many refills in tests
+    Lexer(String fileName, boolean streaming, int chunkSize) {
+        if (!streaming) {
+            getInput(fileName);
+            return;
+        }
+        try {
+            channel = FileChannel.open(Paths.get(fileName));
+        } catch (IOException e) {
+            getInput(fileName);  // Falls back to reading a line from stdin like the in-memory mode
+            return;
+        }
+        decoder = Charset.defaultCharset().newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        chunk = ByteBuffer.allocateDirect(chunkSize);
+        window = new char[chunkSize];
+    }
+
+    /**
+     * Builds a lexer over source text that is already in memory, e.g. a script received by a service
+     * @param source the program text
+     * @return a Lexer positioned at the start of source
+     */
+    public static Lexer fromSource(String source) {
+        Lexer lexer = new Lexer();
+        lexer.buffer = source;
+        lexer.ascii = asciiBytes(source);
+        return lexer;
+    }
+
+    private Lexer() {
+    }
+
+    // Lexer over buffer[start, limit), e.g. a chunk of tokenizeParallel or the lines an edit touched; lines count from 0
+    Lexer(String buffer, int start, int limit) {
+        this.buffer = buffer;
+        this.index = start;
+        this.limit = limit;
+        this.lineNumber = 0;
+    }
+
     /**
      * Reads given file into the data member buffer
      * @param fileName name of file to parse
@@ -44,6 +191,7 @@ public class Lexer {
             Path filePath = Paths.get(fileName);
             byte[] allBytes = Files.readAllBytes(filePath);
             buffer = new String(allBytes);
+            ascii = isAscii(allBytes) && buffer.length() == allBytes.length ? allBytes : null;
         } catch (IOException e) {
             System.out.println("You did not enter a valid file name in the run arguments.");
             System.out.println("Please enter a string to be parsed:");
@@ -57,6 +205,7 @@ public class Lexer {
      * @return ArrayList of Token
      */
     public ArrayList<Token> getAllTokens() {
+        Metrics.Timer timer = Metrics.ENABLED ? Metrics.start(Metrics.Phase.LEX) : null;
         ArrayList<Token> tokens = new ArrayList<>();
         Token toke = getNextToken();
         Token eof = new Token(EOFTOKEN, "-", lineNumber);
@@ -70,89 +219,462 @@ public class Lexer {
         // Add the EOF token after processing all valid tokens
         tokens.add(eof);
 
+        if (timer != null) {
+            timer.stop(tokens.size());
+        }
         return tokens;
     }
 
+    /**
+     * Return the next token as a Token object, or null at the end of the input.
+     * This is a view over scan(); callers that care about allocation should use scan() directly.
+     * @return the next Token
+     */
     public Token getNextToken() {
+        int kind = scan();
+        if (kind == EOFKIND) {
+            return null;  // No more tokens
+        }
+        return toToken(kind, tokenStart, tokenLength, tokenLine);
+    }
+
+    /**
+     * Scans the next token without allocating anything. Its kind, start offset, length and
+     * line are left in tokenKind, tokenStart, tokenLength and tokenLine. When streaming, the
+     * lexeme only stays addressable until the following call to scan().
+     * @return the kind of the token, EOFKIND once the input is exhausted
+     */
+    public int scan() {
+        if (ascii != null) {
+            return scanAscii();
+        }
+        mark = -1;  // Nothing needs to be kept while skipping whitespace
+
         // Skip over any whitespace and track newlines
-        while (index < buffer.length() && Character.isWhitespace(buffer.charAt(index))) {
-            if (buffer.charAt(index) == '\n') {
+        while (has(index) && Character.isWhitespace(at(index))) {
+            if (at(index) == '\n') {
                 lineNumber++;  // Increment line number on newline
             }
             index++;  // Move index forward to skip whitespace
         }
 
+        tokenStart = mark = index;
+        tokenLine = lineNumber;
+        tokenValue = 0;
+
         // Check if index reached the end of buffer
-        if (index >= buffer.length()) {
-            return null;  // No more tokens
+        if (!has(index)) {
+            tokenLength = 0;
+            return tokenKind = EOFKIND;  // No more tokens
         }
 
         // Read the current character
-        char c = buffer.charAt(index);
-
-        // Handle letters (Identifiers)
+        char c = at(index);
+        int kind;
         if (Character.isLetter(c)) {
-            return getIdentifier();
+            kind = scanIdentifier();  // Handle letters (Identifiers)
+        } else if (Character.isDigit(c)) {
+            kind = scanInteger();  // Handle digits (Integers)
+        } else {
+            index++;
+            switch (c) {
+                case '=':
+                    kind = ASSMTKIND;
+                    break;
+                case '+':
+                    kind = PLUSKIND;
+                    break;
+                case '*':
+                    kind = MULTKIND;
+                    break;
+                case '/':
+                    kind = DIVKIND;
+                    break;
+                case '-':
+                    kind = SUBKIND;
+                    break;
+                case '(':
+                    kind = LPARENKIND;
+                    break;
+                case ')':
+                    kind = RPARENKIND;
+                    break;
+                default:
+                    kind = UNKNOWNKIND;  // Handle any unknown character
+            }
         }
+        tokenLength = index - tokenStart;
+        return tokenKind = kind;
+    }
 
-        // Handle digits (Integers)
-        if (Character.isDigit(c)) {
-            return getInteger();
+    // Skips over an identifier after initial check catches a letter, hashing it like String.hashCode()
+    private int scanIdentifier() {
+        int hash = 0;
+        while (has(index) && (Character.isLetter(at(index)) || Character.isDigit(at(index)))) {
+            hash = 31 * hash + at(index);
+            index++;
         }
+        tokenValue = hash;
+        return IDKIND;
+    }
 
-        // Handle assignment token '='
-        if (c == '=') {
+    // Skips over an integer after initial check catches a digit, and computes its value if it is short
+    private int scanInteger() {
+        int start = index;
+        int value = 0;
+        while (has(index) && Character.isDigit(at(index))) {
+            value = 10 * value + Character.digit(at(index), 10);  // Integer.parseInt takes every Unicode digit too
             index++;
-            return new Token(ASSMTTOKEN, "=", lineNumber);
         }
+        tokenValue = index - start <= MAX_INLINE_DIGITS ? value : 0;
+        return INTKIND;
+    }
 
-        // Handle plus token '+'
-        if (c == '+') {
-            index++;
-            return new Token(PLUSTOKEN, "+", lineNumber);
+    // scan() over the ASCII bytes of the input: a table lookup per character and a switch on its class
+    private int scanAscii() {
+        byte[] bytes = ascii;
+        int end = Math.min(limit, bytes.length);
+        int i = index;
+
+        // Skip whitespace, counting newlines; runs of spaces such as indentation go eight at a time
+        while (i < end) {
+            if (bytes[i] == ' ' && i + 8 <= end) {
+                long notSpaces = (long) LONGS.get(bytes, i) ^ SPACES;
+                i += Long.numberOfTrailingZeros(notSpaces) >>> 3;  // 8 when all of them are spaces
+                continue;
+            }
+            byte kind = ASCII_CLASSES[bytes[i]];
+            if (kind == NEWLINE) {
+                lineNumber++;
+            } else if (kind != SPACE) {
+                break;
+            }
+            i++;
         }
 
-        // Handle multiplication token '*'
-        if (c == '*') {
-            index++;
-            return new Token(MULTTOKEN, "*", lineNumber);
+        tokenStart = i;
+        tokenLine = lineNumber;
+        tokenValue = 0;
+        int kind;
+        if (i >= end) {
+            kind = EOFKIND;
+        } else {
+            kind = ASCII_CLASSES[bytes[i]];
+            switch (kind) {
+                case IDKIND:
+                    i = identifierEnd(bytes, i + 1, end);
+                    int hash = 0;
+                    for (int j = tokenStart; j < i; j++) {
+                        hash = 31 * hash + bytes[j];  // String.hashCode()
+                    }
+                    tokenValue = hash;
+                    break;
+                case INTKIND:
+                    i = digitsEnd(bytes, i + 1, end);
+                    if (i - tokenStart <= MAX_INLINE_DIGITS) {
+                        tokenValue = parseDigits(bytes, tokenStart, i);
+                    }
+                    break;
+                default:
+                    i++;  // Operators, parentheses and unknown characters are one character long
+            }
         }
+        index = i;
+        tokenLength = i - tokenStart;
+        return tokenKind = kind;
+    }
 
-        // Handle division token '/'
-        if (c == '/') {
-            index++;
-            return new Token(DIVTOKEN, "/", lineNumber);
+    // End of the run of ASCII letters and digits starting at i
+    private static int identifierEnd(byte[] bytes, int i, int end) {
+        for (; i + 8 <= end; i += 8) {
+            long word = (long) LONGS.get(bytes, i);
+            long stop = ~(letters(word) | digits(word)) & HIGH_BITS;
+            if (stop != 0) {
+                return i + (Long.numberOfTrailingZeros(stop) >>> 3);
+            }
         }
+        while (i < end && (ASCII_CLASSES[bytes[i]] == IDKIND || ASCII_CLASSES[bytes[i]] == INTKIND)) {
+            i++;
+        }
+        return i;
+    }
 
-        // Handle subtraction token '-'
-        if (c == '-') {
-            index++;
-            return new Token(SUBTOKEN, "-", lineNumber);
+    // End of the run of ASCII digits starting at i
+    private static int digitsEnd(byte[] bytes, int i, int end) {
+        for (; i + 8 <= end; i += 8) {
+            long stop = ~digits((long) LONGS.get(bytes, i)) & HIGH_BITS;
+            if (stop != 0) {
+                return i + (Long.numberOfTrailingZeros(stop) >>> 3);
+            }
         }
+        while (i < end && ASCII_CLASSES[bytes[i]] == INTKIND) {
+            i++;
+        }
+        return i;
+    }
 
-        // Handle any unknown character
-        index++;
-        return new Token(IDTOKEN, "UNKNOWN", lineNumber);
+    // High bit of each byte of word set where the byte is '0' to '9'; every byte must be ASCII
+    private static long digits(long word) {
+        long atLeastZero = word + 0x5050505050505050L;  // Byte + 0x50 reaches 0x80 from '0' (0x30) on
+        long aboveNine = word + 0x4646464646464646L;    // Byte + 0x46 reaches 0x80 from ':' (0x3A) on
+        return atLeastZero & ~aboveNine & HIGH_BITS;
     }
 
-    // Gets identifier value after initial check catches a letter
-    private Token getIdentifier() {
-        StringBuilder idsb = new StringBuilder();
-        while (index < buffer.length() && (Character.isLetter(buffer.charAt(index)) || Character.isDigit(buffer.charAt(index)))) {
-            idsb.append(buffer.charAt(index));
-            index++;
+    // High bit of each byte of word set where the byte is 'A' to 'Z' or 'a' to 'z'; every byte must be ASCII
+    private static long letters(long word) {
+        long lower = word | SPACES;                       // Sets bit 5, which folds upper case onto lower case
+        long atLeastA = lower + 0x1F1F1F1F1F1F1F1FL;     // Reaches 0x80 from 'a' (0x61) on
+        long aboveZ = lower + 0x0505050505050505L;       // Reaches 0x80 from '{' (0x7B) on
+        return atLeastA & ~aboveZ & HIGH_BITS;
+    }
+
+    // Value of the ASCII digits bytes[start, end), at most MAX_INLINE_DIGITS of them
+    private static int parseDigits(byte[] bytes, int start, int end) {
+        int value = 0;
+        if (end - start >= 8) {
+            // Eight digits at once: combine neighbouring digits, then pairs, then quads
+            long word = (long) LONGS.get(bytes, start) - 0x3030303030303030L;
+            word = (word * 10 + (word >>> 8)) & 0x00FF00FF00FF00FFL;
+            word = (word * 100 + (word >>> 16)) & 0x0000FFFF0000FFFFL;
+            word = (word * 10000 + (word >>> 32)) & 0xFFFFFFFFL;
+            value = (int) word;
+            start += 8;
         }
-        return new Token(IDTOKEN, idsb.toString(), lineNumber);
+        for (; start < end; start++) {
+            value = 10 * value + (bytes[start] - '0');
+        }
+        return value;
     }
 
-    // Gets integers after initial check catches a digit
-    private Token getInteger() {
-        StringBuilder intsb = new StringBuilder();
-        while (index < buffer.length() && Character.isDigit(buffer.charAt(index))) {
-            intsb.append(buffer.charAt(index));
-            index++;
+    // The bytes of source if every character is ASCII, otherwise null
+    private static byte[] asciiBytes(String source) {
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) >= 0x80) {
+                return null;
+            }
+        }
+        return source.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static boolean isAscii(byte[] bytes) {
+        for (byte b : bytes) {
+            if (b < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Scans the whole input into a compact TokenBuffer, ending with the EOF token.
+     * The lexemes are read back from buffer, so this needs the in-memory mode.
+     * @return TokenBuffer holding every token
+     */
+    public TokenBuffer tokenize() {
+        if (window != null) {
+            throw new IllegalStateException("tokenize() needs the whole input in memory; use scan() when streaming");
+        }
+        Metrics.Timer timer = Metrics.ENABLED ? Metrics.start(Metrics.Phase.LEX) : null;
+        TokenBuffer tokens = new TokenBuffer(this);
+        while (scan() != EOFKIND) {
+            tokens.add(tokenKind, tokenStart, tokenLength, tokenLine, tokenValue);
+        }
+        addEof(tokens);
+        if (timer != null) {
+            timer.stop(tokens.size());
+        }
+        return tokens;
+    }
+
+    // getAllTokens gives the EOF token the line the lexer was on after its first token
+    private void addEof(TokenBuffer tokens) {
+        int eofLine = tokens.size() > 0 ? tokens.getLineNumber(0) : lineNumber;
+        tokens.add(EOFKIND, index, 0, eofLine);
+    }
+
+    /**
+     * Same result as tokenize(), but lexes large inputs on the common fork/join pool.
+     * The input is split just after newlines into chunks of at least MIN_PARALLEL_CHUNK
+     * characters. No token spans a newline, so each chunk is lexed on its own with lines
+     * counted from 0, and the chunks are then stitched together in order, each shifted by
+     * the number of newlines before it.
+     * @return TokenBuffer holding every token
+     */
+    public TokenBuffer tokenizeParallel() {
+        if (window != null) {
+            throw new IllegalStateException("tokenizeParallel() needs the whole input in memory");
+        }
+        int end = Math.min(limit, buffer.length());
+        int chunkSize = Math.max(MIN_PARALLEL_CHUNK, (end - index) / (ForkJoinPool.getCommonPoolParallelism() * 4));
+        if (end - index < 2 * chunkSize) {
+            return tokenize();
+        }
+        Metrics.Timer timer = Metrics.ENABLED ? Metrics.start(Metrics.Phase.LEX) : null;
+
+        ArrayList<Chunk> chunks = new ArrayList<>();
+        for (int start = index; start < end; ) {
+            int newline = start + chunkSize < end ? buffer.indexOf('\n', start + chunkSize) : -1;
+            int chunkEnd = newline < 0 || newline >= end ? end : newline + 1;
+            Lexer lexer = new Lexer(buffer, start, chunkEnd);
+            lexer.ascii = ascii;
+            chunks.add(new Chunk(lexer));
+            start = chunkEnd;
+        }
+        ForkJoinTask.invokeAll(chunks);
+
+        int count = 1;
+        for (Chunk chunk : chunks) {
+            count += chunk.tokens.size();
+        }
+        TokenBuffer tokens = new TokenBuffer(this, count);
+        for (Chunk chunk : chunks) {
+            tokens.append(chunk.tokens, lineNumber);
+            lineNumber += chunk.lexer.lineNumber;  // Newlines in the chunk
+        }
+        // Leave this lexer where a sequential scan to the end would have
+        index = end;
+        tokenStart = end;
+        tokenLength = 0;
+        tokenLine = lineNumber;
+        tokenKind = EOFKIND;
+        addEof(tokens);
+        if (timer != null) {
+            timer.stop(tokens.size());
+        }
+        return tokens;
+    }
+
+    /**
+     * Token list of tokenizeParallel(), the same list getAllTokens() returns
+     * @return ArrayList of Token
+     */
+    public ArrayList<Token> getAllTokensParallel() {
+        return tokenizeParallel().toTokens();
+    }
+
+    // One chunk of tokenizeParallel; its tokens point into the shared buffer
+    private static class Chunk extends RecursiveAction {
+        final Lexer lexer;
+        TokenBuffer tokens;
+
+        Chunk(Lexer lexer) {
+            this.lexer = lexer;
+        }
+
+        @Override
+        protected void compute() {
+            tokens = new TokenBuffer(lexer);
+            while (lexer.scan() != EOFKIND) {
+                tokens.add(lexer.tokenKind, lexer.tokenStart, lexer.tokenLength, lexer.tokenLine, lexer.tokenValue);
+            }
+        }
+    }
+
+    /**
+     * Reads the text of a lexeme back from the source
+     * @param start absolute start offset of the lexeme
+     * @param length number of characters
+     * @return the lexeme
+     */
+    public String lexeme(int start, int length) {
+        if (window == null) {
+            return buffer.substring(start, start + length);
+        }
+        return new String(window, start - windowBase, length);
+    }
+
+    /**
+     * Looks up an identifier of the input in a symbol table without making a String of it
+     * @param table the symbol table
+     * @param start absolute start offset of the identifier
+     * @param length number of characters
+     * @param hash its hash, the tokenValue it was scanned with
+     * @return the address, or -1 if the identifier is not in the table
+     */
+    public int getAddress(IdTable table, int start, int length, int hash) {
+        if (window == null) {
+            return table.getAddress(buffer, start, length, hash);
+        }
+        return table.getAddress(window, start - windowBase, length, hash);
+    }
+
+    /**
+     * Builds the Token view of a scanned token
+     * @return Token with the type name and value the rest of the code expects
+     */
+    public Token toToken(int kind, int start, int length, int line) {
+        String value;
+        if (kind == EOFKIND) {
+            value = "-";
+        } else if (kind == UNKNOWNKIND) {
+            value = "UNKNOWN";
+        } else {
+            value = lexeme(start, length);
+        }
+        return new Token(typeName(kind), value, line);
+    }
+
+    /**
+     * Maps a token kind to its type name, e.g. IDKIND to "ID"
+     * @param kind one of the *KIND constants
+     * @return the matching *TOKEN string
+     */
+    public static String typeName(int kind) {
+        return TYPES[kind];
+    }
+
+    // Returns true if the character at absolute position i exists, pulling in the next chunk when streaming
+    private boolean has(int i) {
+        if (window == null) {
+            return i < limit && i < buffer.length();
+        }
+        while (i >= windowBase + windowLength) {
+            if (!refill()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Character at absolute position i; only valid after has(i) returned true
+    private char at(int i) {
+        return window == null ? buffer.charAt(i) : window[i - windowBase];
+    }
+
+    // Drops the consumed part of the window and decodes the next chunk of the file into it
+    private boolean refill() {
+        if (channel == null) {
+            return false;  // End of input already reached
+        }
+        int keep = mark < 0 ? index : mark;
+        int consumed = Math.min(keep, windowBase + windowLength) - windowBase;
+        System.arraycopy(window, consumed, window, 0, windowLength - consumed);
+        windowBase += consumed;
+        windowLength -= consumed;
+        if (window.length - windowLength < 2) {
+            window = Arrays.copyOf(window, window.length * 2);  // Room for at least one surrogate pair
+        }
+
+        CharBuffer out = CharBuffer.wrap(window, windowLength, window.length - windowLength);
+        try {
+            while (out.position() == windowLength && channel != null) {
+                boolean endOfInput = channel.read(chunk) < 0;
+                chunk.flip();
+                decoder.decode(chunk, out, endOfInput);
+                chunk.compact();
+                if (endOfInput) {
+                    decoder.flush(out);
+                    channel.close();
+                    channel = null;
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading input: " + e.getMessage());
+            channel = null;
         }
-        return new Token(INTTOKEN, intsb.toString(), lineNumber);
+        boolean grew = out.position() > windowLength;
+        windowLength = out.position();
+        return grew;
     }
 
     @Override
@@ -0,0 +1,70 @@
+import java.util.Arrays;
+
+/**
+ * Maps code indexes back to source lines, like the LineNumberTable of a class file. Each entry is
+ * the code index where the instructions generated from a line start; an instruction belongs to the
+ * last entry at or before it. The Parser adds an entry only when the line changes, so the table
+ * stays as small as the number of lines.
+ */
+public class LineTable {
+
+    // Code index and line of each entry, in code order
+    private int[] entries = new int[16];
+    private int size = 0;
+
+    /**
+     * Records that the instructions from codeIndex on come from a line
+     * @param codeIndex index in the code, at or after the last entry's
+     * @param line the source line number
+     */
+    public void add(int codeIndex, int line) {
+        if (size > 0) {
+            if (entries[2 * size - 1] == line) {
+                return;  // Same line as the instructions before
+            }
+            if (entries[2 * size - 2] == codeIndex) {
+                entries[2 * size - 1] = line;  // No instruction was generated for the previous line
+                return;
+            }
+        }
+        if (2 * size == entries.length) {
+            entries = Arrays.copyOf(entries, entries.length * 2);
+        }
+        entries[2 * size] = codeIndex;
+        entries[2 * size + 1] = line;
+        size++;
+    }
+
+    // Adds the entries of a table for code that was placed at offset, e.g. a parsed partition
+    public void append(LineTable other, int offset) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.entries[2 * i] + offset, other.entries[2 * i + 1]);
+        }
+    }
+
+    /**
+     * Source line of the instruction at a code index
+     * @param codeIndex index of a command in the code
+     * @return the line number, or -1 if the table has no entry at or before codeIndex
+     */
+    public int getLine(int codeIndex) {
+        int low = 0;
+        int high = size - 1;
+        int line = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (entries[2 * middle] <= codeIndex) {
+                line = entries[2 * middle + 1];
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return line;
+    }
+
+    // Number of entries
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,258 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime metrics for the lex, parse and run phases. For each phase they record how often it
+ * ran, the time it took, the bytes it allocated and the tokens or instructions it processed.
+ * They also estimate how often each opcode was executed, from the opcodes in the code that ran
+ * times the number of runs. Every phase is also committed as a JFR
+ * event (interpreter.Phase), and the totals as a periodic event (interpreter.Counters), for
+ * recordings made with -XX:StartFlightRecording.
+ * Metrics are off unless the JVM runs with -Dinterpreter.metrics=true. ENABLED is a static final,
+ * so when they are off the JIT compiler drops the instrumentation and the phases run as before.
+ */
+public final class Metrics {
+
+    public static final boolean ENABLED = Boolean.getBoolean("interpreter.metrics");
+
+    public enum Phase {
+        LEX,    // Lexer.getAllTokens, tokenize and tokenizeParallel; items are tokens
+        PARSE,  // Parser.parseProgram and parseProgramParallel; items are tokens consumed
+        RUN     // ByteCodeInterpreter.run and runParallel; items are instructions executed
+    }
+
+    // Number of opcodes, 0 to POPDIV
+    private static final int OPCODES = ByteCodeInterpreter.POPDIV + 1;
+    private static final int PHASES = Phase.values().length;
+    private static final LongAdder[] counts = adders();
+    private static final LongAdder[] nanos = adders();
+    private static final LongAdder[] items = adders();
+    private static final LongAdder[] allocated = adders();
+    private static final AtomicLongArray opcodes = new AtomicLongArray(OPCODES);
+
+    // Per-thread allocation counter of HotSpot, null when metrics are off or it is not available
+    private static final com.sun.management.ThreadMXBean threads = ENABLED ? allocationCounter() : null;
+
+    static {
+        if (ENABLED) {
+            FlightRecorder.addPeriodicEvent(CountersEvent.class, Metrics::commitCounters);
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * One lex, parse or run, as a JFR event
+     */
+    @Name("interpreter.Phase")
+    @Label("Interpreter Phase")
+    @Category("Interpreter")
+    @StackTrace(false)
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("Items")
+        @Description("Tokens lexed or parsed, or instructions executed")
+        long items;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocatedBytes;
+    }
+
+    /**
+     * Totals since the start or the last reset(), as a periodic JFR event
+     */
+    @Name("interpreter.Counters")
+    @Label("Interpreter Counters")
+    @Category("Interpreter")
+    @Period("1 s")
+    @StackTrace(false)
+    static class CountersEvent extends Event {
+        @Label("Tokens")
+        long tokens;
+
+        @Label("Programs Parsed")
+        long programs;
+
+        @Label("Runs")
+        long runs;
+
+        @Label("Instructions")
+        long instructions;
+    }
+
+    /**
+     * Measures one phase; stop() records it
+     */
+    public static final class Timer {
+        private final Phase phase;
+        private final long start;
+        private final long startAllocated;
+        private final PhaseEvent event = new PhaseEvent();
+
+        private Timer(Phase phase) {
+            this.phase = phase;
+            this.startAllocated = allocatedBytes();
+            event.begin();
+            this.start = System.nanoTime();
+        }
+
+        // Records the phase with the number of tokens or instructions it processed
+        public void stop(long processed) {
+            long elapsed = System.nanoTime() - start;
+            event.end();
+            long bytes = allocatedBytes() - startAllocated;
+            int i = phase.ordinal();
+            counts[i].increment();
+            nanos[i].add(elapsed);
+            items[i].add(processed);
+            allocated[i].add(bytes);
+            if (event.shouldCommit()) {
+                event.phase = phase.name();
+                event.items = processed;
+                event.allocatedBytes = bytes;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Starts measuring a phase. Call it as Metrics.ENABLED ? Metrics.start(phase) : null,
+     * so that nothing is left of it when metrics are off.
+     * @param phase the phase that starts
+     * @return the timer to stop when the phase ends
+     */
+    public static Timer start(Phase phase) {
+        return new Timer(phase);
+    }
+
+    /**
+     * Adds one run's estimated executions per opcode. The estimate assumes every instruction of the
+     * code ran once: true for ByteCodeInterpreter.run(), whose code has no jumps and which goes on
+     * after reporting a run-time error, but not for a run that stops early.
+     * @param histogram number of instructions of each opcode in the code that ran
+     */
+    public static void addOpcodeEstimate(int[] histogram) {
+        for (int opcode = 0; opcode < histogram.length; opcode++) {
+            if (histogram[opcode] != 0) {
+                opcodes.addAndGet(opcode, histogram[opcode]);
+            }
+        }
+    }
+
+    // Number of instructions of each opcode in code, for addOpcodeEstimate
+    public static int[] histogram(int[] code, int length) {
+        int[] histogram = new int[OPCODES];
+        for (int pc = 0; pc + 1 < length; pc += 2) {
+            if (code[pc] >= 0 && code[pc] < histogram.length) {
+                histogram[code[pc]]++;
+            }
+        }
+        return histogram;
+    }
+
+    public static long getCount(Phase phase) {
+        return counts[phase.ordinal()].sum();
+    }
+
+    public static long getNanos(Phase phase) {
+        return nanos[phase.ordinal()].sum();
+    }
+
+    // Tokens for LEX and PARSE, instructions for RUN
+    public static long getItems(Phase phase) {
+        return items[phase.ordinal()].sum();
+    }
+
+    // Bytes allocated by the threads while in the phase, 0 where the JVM cannot tell
+    public static long getAllocatedBytes(Phase phase) {
+        return allocated[phase.ordinal()].sum();
+    }
+
+    // Estimated executions of an opcode, see addOpcodeEstimate
+    public static long getEstimatedOpcodeCount(int opcode) {
+        return opcodes.get(opcode);
+    }
+
+    /**
+     * Every metric by name, e.g. "lex.nanos", "run.items" or "opcodeEstimate.LOADI", for export
+     * @return the metrics in a stable order
+     */
+    public static Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        for (Phase phase : Phase.values()) {
+            String name = phase.name().toLowerCase(Locale.ROOT);
+            snapshot.put(name + ".count", getCount(phase));
+            snapshot.put(name + ".nanos", getNanos(phase));
+            snapshot.put(name + ".items", getItems(phase));
+            snapshot.put(name + ".allocatedBytes", getAllocatedBytes(phase));
+        }
+        for (int opcode = 0; opcode < OPCODES; opcode++) {
+            snapshot.put("opcodeEstimate." + ByteCodeInterpreter.commandName(opcode), opcodes.get(opcode));
+        }
+        return snapshot;
+    }
+
+    // Sets every metric back to 0
+    public static void reset() {
+        for (int i = 0; i < PHASES; i++) {
+            counts[i].reset();
+            nanos[i].reset();
+            items[i].reset();
+            allocated[i].reset();
+        }
+        for (int opcode = 0; opcode < OPCODES; opcode++) {
+            opcodes.set(opcode, 0);
+        }
+    }
+
+    private static void commitCounters() {
+        CountersEvent event = new CountersEvent();
+        event.tokens = getItems(Phase.LEX);
+        event.programs = getCount(Phase.PARSE);
+        event.runs = getCount(Phase.RUN);
+        event.instructions = getItems(Phase.RUN);
+        event.commit();
+    }
+
+    private static long allocatedBytes() {
+        return threads == null ? 0 : threads.getCurrentThreadAllocatedBytes();
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) bean;
+            if (counter.isThreadAllocatedMemorySupported()) {
+                counter.setThreadAllocatedMemoryEnabled(true);
+                return counter;
+            }
+        }
+        return null;
+    }
+
+    private static LongAdder[] adders() {
+        LongAdder[] adders = new LongAdder[PHASES];
+        for (int i = 0; i < PHASES; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
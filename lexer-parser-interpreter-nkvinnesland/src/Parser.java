@@ -1,23 +1,144 @@
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 public class Parser {
 
-    private ArrayList<Token> tokeList;
+    // Tokens are pulled from the lexer on demand, so only the lookahead window is ever held.
+    // Token kinds are compared as ints and lexemes are only read back when they are needed.
+    private Lexer lexer;
+    private TokenBuffer tokens;  // Pre-scanned tokens, or null to pull from the lexer
     private IdTable idTable;
     private ByteCodeInterpreter bytecodeInterpreter;
-    int index = 0;
+    int index = 0;  // Number of tokens consumed so far
+    private boolean sizeMemoryFromIdTable = false;
+
+    // The token last consumed and the one-token lookahead window
+    private int kind, start, length, line, value;
+    private boolean peeked = false;
+    private int peekKind, peekStart, peekLength, peekLine, peekValue;
+
+    // The operand last resolved: LOAD with an address or LOADI with a value
+    private int operandCommand, operandValue;
+
+    // Smallest number of tokens parseProgramParallel gives to one partition
+    public static final int MIN_PARALLEL_TOKENS = 16 * 1024;
+
+    // Local symbols of the partition this parser handles, null otherwise. A partition parser is quiet;
+    // when it fails the program is parsed again sequentially to report the error.
+    private Partition partition;
+
+    // When quiet nothing is printed; the errors are still kept for getError() and getDiagnostics()
+    private boolean quiet = false;
+    private String error;
+    private final ArrayList<Diagnostic> diagnostics = new ArrayList<>();
 
     public Parser(Lexer lexer, int memorySize) {
-        this.tokeList = lexer.getAllTokens();
+        this.lexer = lexer;
         this.idTable = new IdTable();
         this.bytecodeInterpreter = new ByteCodeInterpreter(memorySize);  // Instantiate ByteCodeInterpreter
     }
 
+    // Sizes the interpreter memory from the IdTable once the program has been parsed
+    public Parser(Lexer lexer) {
+        this(lexer, 0);
+        this.sizeMemoryFromIdTable = true;
+    }
+
+    // Parses tokens that were already scanned with Lexer.tokenize()
+    public Parser(TokenBuffer tokens, int memorySize) {
+        this(tokens.getSource(), memorySize);
+        this.tokens = tokens;
+    }
+
+    // Parses the statements of one partition, generating code with local symbol indices as addresses
+    private Parser(TokenBuffer tokens, Partition partition) {
+        this(tokens, 0);
+        this.partition = partition;
+        this.index = partition.start;
+        this.quiet = true;
+    }
+
+    // Returns the kind of the next token without consuming it
+    private int peek() {
+        if (!peeked) {
+            if (tokens != null) {
+                int i = Math.min(index, tokens.size() - 1);  // Keep returning the trailing EOF
+                peekKind = tokens.getKind(i);
+                peekStart = tokens.getStart(i);
+                peekLength = tokens.getLength(i);
+                peekLine = tokens.getLineNumber(i);
+                peekValue = tokens.getValue(i);
+            } else {
+                peekKind = lexer.scan();
+                peekStart = lexer.tokenStart;
+                peekLength = lexer.tokenLength;
+                peekLine = lexer.tokenLine;
+                peekValue = lexer.tokenValue;
+            }
+            peeked = true;
+        }
+        return peekKind;
+    }
+
+    // Consumes the next token and returns its kind. When streaming, read its lexeme before peeking again.
+    private int next() {
+        peek();
+        kind = peekKind;
+        start = peekStart;
+        length = peekLength;
+        line = peekLine;
+        value = peekValue;
+        peeked = false;
+        index++;
+        return kind;
+    }
+
+    // Text of the token last consumed
+    private String lexeme() {
+        return kind == Lexer.UNKNOWNKIND ? "UNKNOWN" : lexer.lexeme(start, length);
+    }
+
+    // Address of the identifier token last consumed in table, -1 if it is not there. Like lexeme(),
+    // this reads the token's text, so it has to happen before the next peek; it makes no String.
+    private int lookup(IdTable table) {
+        if (kind == Lexer.UNKNOWNKIND) {
+            return table.getAddress("UNKNOWN");
+        }
+        return lexer.getAddress(table, start, length, value);  // The value of an identifier is its hash
+    }
+
+    // Local number of the identifier token last consumed, numbering it if it is new to the partition
+    private int local() {
+        int local = lookup(partition.locals);
+        return local != -1 ? local : partition.add(lexeme());
+    }
+
+    // Reports a parse error
+    private void error(Diagnostic.Kind kind, int line, String identifier, String message) {
+        if (error == null) {
+            error = message;
+        }
+        diagnostics.add(new Diagnostic(kind, line, identifier, message));
+        if (!quiet) {
+            System.out.println(message);
+        }
+    }
+
+    // Unknown characters are identifiers named UNKNOWN, as they always have been
+    private static boolean isId(int kind) {
+        return kind == Lexer.IDKIND || kind == Lexer.UNKNOWNKIND;
+    }
+
     @Override
     public String toString() {
         return "Parser{" +
-                "tokeList=" + tokeList +
+                "lexer=" + lexer +
                 ", idTable=" + idTable +
                 ", bytecodeInterpreter=" + bytecodeInterpreter +
                 ", index=" + index +
@@ -29,60 +150,259 @@ public class Parser {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Parser parser = (Parser) o;
-        return index == parser.index && Objects.equals(tokeList, parser.tokeList) && Objects.equals(idTable, parser.idTable) && Objects.equals(bytecodeInterpreter, parser.bytecodeInterpreter);
+        return index == parser.index && Objects.equals(lexer, parser.lexer) && Objects.equals(idTable, parser.idTable) && Objects.equals(bytecodeInterpreter, parser.bytecodeInterpreter);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(tokeList, idTable, bytecodeInterpreter, index);
+        return Objects.hash(lexer, idTable, bytecodeInterpreter, index);
     }
 
     // Parse the entire program, handling multiple assignments
     public boolean parseProgram() {
+        Metrics.Timer timer = Metrics.ENABLED ? Metrics.start(Metrics.Phase.PARSE) : null;
+        int first = index;
         boolean isValid = true;
-        while (index < tokeList.size()) {  // Iterate through the token list
+        while (true) {  // Iterate through the token stream
             if (!parseAssignment()) {
                 isValid = false;
                 break;  // Stop parsing if an error is encountered
             }
 
-            Token nextToken = tokeList.get(index);  // Peek at the next token
-            if (nextToken.getType().equals(Lexer.EOFTOKEN)) {
+            if (peek() == Lexer.EOFKIND) {  // Peek at the next token
                 break;  // End parsing if we reach the end of the file
             }
         }
 
-        // If parsing was successful, print "Valid Program"
-        if (isValid) {
-            System.out.println("Valid Program");
-        } else {
-            System.out.println("Invalid Program");
+        finish(isValid);
+        if (timer != null) {
+            timer.stop(index - first);
         }
-        System.out.println(idTable.toString());
         return isValid;
     }
 
+    // Prints the result and the IdTable, and sizes the memory, after the whole program was parsed
+    private void finish(boolean isValid) {
+        if (!quiet) {
+            // If parsing was successful, print "Valid Program"
+            if (isValid) {
+                System.out.println("Valid Program");
+            } else {
+                System.out.println("Invalid Program");
+            }
+            System.out.println(idTable.toString());
+        }
+        if (sizeMemoryFromIdTable) {
+            bytecodeInterpreter.resizeMemory(idTable.size());  // One slot per identifier
+        }
+    }
+
+    /**
+     * Same result, output and code as parseProgram(), but parses large token buffers in parallel.
+     * The tokens are cut into partitions at statement starts (an identifier followed by "=").
+     * Every partition is parsed on the common fork/join pool with its own symbol numbering.
+     * A merge then checks that each identifier is defined before it is used, gives the
+     * identifiers addresses in order of first definition, and rewrites and concatenates the
+     * code. Invalid programs, and parsers that read from a Lexer, are parsed sequentially so
+     * that the errors are the same.
+     * @return true if the program is valid
+     */
+    public boolean parseProgramParallel() {
+        if (tokens == null || peeked) {
+            return parseProgram();
+        }
+        ArrayList<Partition> partitions = partition();
+        if (partitions.size() < 2) {
+            return parseProgram();
+        }
+        Metrics.Timer timer = Metrics.ENABLED ? Metrics.start(Metrics.Phase.PARSE) : null;  // Dropped if it falls back
+        int first = index;
+        ForkJoinTask.invokeAll(partitions);
+
+        // Define-before-use across partitions, without touching the IdTable yet
+        HashSet<String> defined = new HashSet<>();
+        for (Partition part : partitions) {
+            if (!part.valid) {
+                return parseProgram();
+            }
+            for (int local = 0; local < part.names.size(); local++) {
+                String id = part.names.get(local);
+                boolean definedBefore = idTable.getAddress(id) != -1 || defined.contains(id);
+                if (part.firstUses[local] != Integer.MAX_VALUE && !definedBefore
+                        && part.firstDefinitions[local] > part.firstUses[local]) {
+                    return parseProgram();  // Prints "Identifier is not defined"
+                }
+            }
+            for (int local : part.definitions) {
+                defined.add(part.names.get(local));
+            }
+        }
+
+        // Addresses in order of first definition, then the code with global addresses
+        int length = bytecodeInterpreter.getCodeLength();
+        for (Partition part : partitions) {
+            for (int local : part.definitions) {
+                idTable.addEntry(part.names.get(local));
+            }
+            length += part.code.length;
+        }
+        int[] code = Arrays.copyOf(bytecodeInterpreter.getCode(), length);
+        int at = bytecodeInterpreter.getCodeLength();
+        LineTable lines = bytecodeInterpreter.getLineTable();
+        for (Partition part : partitions) {
+            lines.append(part.lines, at);
+            int[] addresses = new int[part.names.size()];
+            for (int local = 0; local < addresses.length; local++) {
+                addresses[local] = idTable.getAddress(part.names.get(local));
+            }
+            for (int i = 0; i + 1 < part.code.length; i += 2) {
+                int command = part.code[i];
+                code[at + i] = command;
+                code[at + i + 1] = hasAddress(command) ? addresses[part.code[i + 1]] : part.code[i + 1];
+            }
+            at += part.code.length;
+        }
+        bytecodeInterpreter.replaceCode(code, length);
+        bytecodeInterpreter.setLineTable(lines);
+        Partition last = partitions.get(partitions.size() - 1);
+        index = last.end;
+        finish(true);
+        if (timer != null) {
+            timer.stop(index - first);
+        }
+        return true;
+    }
+
+    // Cuts the tokens from index to the EOF token into partitions starting at "id ="
+    private ArrayList<Partition> partition() {
+        int eof = tokens.size() - 1;
+        int size = Math.max(MIN_PARALLEL_TOKENS, (eof - index) / (ForkJoinPool.getCommonPoolParallelism() * 4));
+        ArrayList<Partition> partitions = new ArrayList<>();
+        int start = index;
+        for (int i = start + size; i < eof; i++) {
+            if (isId(tokens.getKind(i)) && tokens.getKind(i + 1) == Lexer.ASSMTKIND) {
+                partitions.add(new Partition(tokens, start, i));
+                start = i;
+                i += size - 1;
+            }
+        }
+        partitions.add(new Partition(tokens, start, eof));
+        return partitions;
+    }
+
+    // Commands whose operand is a memory address
+    static boolean hasAddress(int command) {
+        return command == ByteCodeInterpreter.LOAD || command == ByteCodeInterpreter.STORE
+                || command == ByteCodeInterpreter.SUB || command == ByteCodeInterpreter.MULT
+                || command == ByteCodeInterpreter.DIV;
+    }
+
+    // Parses the statements of this parser's partition; they must end exactly where the next partition starts
+    private boolean parsePartition() {
+        while (index < partition.end) {
+            partition.addStatement(index, bytecodeInterpreter.getCodeLength());
+            if (!parseAssignment()) {
+                return false;
+            }
+        }
+        return index == partition.end;
+    }
+
+    /**
+     * The statements in tokens [start, end), parsed on their own for parseProgramParallel or
+     * IncrementalCompiler. Identifiers are numbered locally in order of first appearance and the
+     * code uses those numbers as addresses.
+     */
+    static class Partition extends RecursiveAction {
+        final TokenBuffer tokens;
+        final int start, end;
+        final IdTable locals = new IdTable();                        // Local numbers as addresses
+        final ArrayList<String> names = new ArrayList<>();           // By local number
+        final ArrayList<Integer> definitions = new ArrayList<>();    // Local numbers in order of first definition
+        int[] firstDefinitions = new int[16];                        // Token index, MAX_VALUE if never assigned
+        int[] firstUses = new int[16];                               // Token index, MAX_VALUE if never read
+        int[] statements = new int[16];                              // Token index and code index where each statement starts
+        int statementCount = 0;
+        int[] code;
+        LineTable lines;
+        boolean valid;
+
+        Partition(TokenBuffer tokens, int start, int end) {
+            this.tokens = tokens;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            Parser parser = new Parser(tokens, this);
+            valid = parser.parsePartition();  // When invalid, the sequential parse reports the error
+            code = parser.bytecodeInterpreter.getCode();
+            lines = parser.bytecodeInterpreter.getLineTable();
+        }
+
+        private void addStatement(int token, int codeIndex) {
+            if (2 * statementCount == statements.length) {
+                statements = Arrays.copyOf(statements, statements.length * 2);
+            }
+            statements[2 * statementCount] = token;
+            statements[2 * statementCount + 1] = codeIndex;
+            statementCount++;
+        }
+
+        // Numbers an identifier new to the partition
+        private int add(String id) {
+            int number = locals.addEntry(id);
+            names.add(id);
+            if (number == firstUses.length) {
+                firstDefinitions = Arrays.copyOf(firstDefinitions, number * 2);
+                firstUses = Arrays.copyOf(firstUses, number * 2);
+            }
+            firstDefinitions[number] = Integer.MAX_VALUE;
+            firstUses[number] = Integer.MAX_VALUE;
+            return number;
+        }
+
+        // Records that a local identifier is assigned at token position
+        int define(int local, int position) {
+            if (firstDefinitions[local] == Integer.MAX_VALUE) {
+                firstDefinitions[local] = position;
+                definitions.add(local);
+            }
+            return local;
+        }
+
+        // Records that a local identifier is read at token position
+        int use(int local, int position) {
+            firstUses[local] = Math.min(firstUses[local], position);
+            return local;
+        }
+    }
+
     // Parse a single assignment
     public boolean parseAssignment() {
-        Token token = tokeList.get(index++);  // Fetch and advance token
+        next();  // Fetch and advance token
 
         // Check if the token is an identifier
-        if (!token.getType().equals(Lexer.IDTOKEN)) {
-            System.out.println("Error: Expecting identifier, line " + token.getLineNumber());
+        if (!isId(kind)) {
+            error(Diagnostic.Kind.EXPECTING_IDENTIFIER, line, null, "Error: Expecting identifier, line " + line);
             return false;
         }
 
-        // Parse the identifier and add it to the IdTable (since it's on the left-hand side)
-        if (!parseId(token, true)) {
-            return false;  // Stop if error in left-hand side identifier
+        // Add the identifier to the IdTable (since it's on the left-hand side) and get its address
+        int address;
+        if (partition != null) {
+            address = partition.define(local(), index);  // Local number, turned into an address by the merge
+        } else {
+            address = lookup(idTable);
+            if (address == -1) {
+                address = idTable.addEntry(lexeme());  // First definition: the only time its name is read
+            }
         }
 
-        int address = idTable.getAddress(token.getValue());  // Get address for storing the result
-
         // Expect assignment operator
-        token = tokeList.get(index++);
-        if (!token.getType().equals(Lexer.ASSMTTOKEN)) {
-            System.out.println("Error: Expecting assignment operator, line " + token.getLineNumber());
+        if (next() != Lexer.ASSMTKIND) {
+            error(Diagnostic.Kind.EXPECTING_ASSIGNMENT, line, null, "Error: Expecting assignment operator, line " + line);
             return false;
         }
 
@@ -94,90 +414,217 @@ public class Parser {
         return true;  // Successfully parsed assignment
     }
 
-    // Parse an expression, handling identifiers and integers
-    // This version also generates bytecode
+    // Generates one instruction, marking it with the line of the token last consumed
+    private void generate(int command, int operand) {
+        bytecodeInterpreter.markLine(line);
+        bytecodeInterpreter.generate(command, operand);
+    }
+
+    // Parse an expression with +, -, * and / (usual precedence, left to right) and parentheses.
+    // Code is generated in the same pass by precedence climbing; no tree is built.
     public boolean parseExpression(int storeAddress) {
-        Token token = tokeList.get(index++);  // Fetch and advance token
+        // The accumulator is 0 at the start of every statement
+        if (!parsePrimary("at the start of expression") || !parseOperators(1)) {
+            return false;
+        }
+
+        // After processing the expression, store the result in the specified memory address
+        generate(ByteCodeInterpreter.STORE, storeAddress);
+
+        return true;  // Expression is valid
+    }
+
+    // Parses an operand or a parenthesized expression and adds its value to the accumulator, which must be 0
+    private boolean parsePrimary(String where) {
+        next();  // Fetch and advance token
+        if (kind == Lexer.LPARENKIND) {
+            return parseParenthesized();
+        }
 
-        // Expect an identifier or an integer to start the expression
-        if (!token.getType().equals(Lexer.IDTOKEN) && !token.getType().equals(Lexer.INTTOKEN)) {
-            System.out.println("Error: Expected identifier or integer at the start of expression, line " + token.getLineNumber());
+        // Expect an identifier or an integer
+        if (!isId(kind) && kind != Lexer.INTKIND) {
+            error(Diagnostic.Kind.EXPECTING_OPERAND, line, null, "Error: Expected identifier or integer " + where + ", line " + line);
+            return false;
+        }
+        if (!resolveOperand()) {
             return false;
         }
+        generate(operandCommand, operandValue);
+        return true;
+    }
 
-        // If it's an identifier, ensure it is defined before proceeding
-        if (token.getType().equals(Lexer.IDTOKEN)) {
-            int address = idTable.getAddress(token.getValue());
-            if (address == -1) {
-                System.out.println("Error: Identifier '" + token.getValue() + "' is not defined, line " + token.getLineNumber());
-                return false;  // Undefined identifier
-            }
-            bytecodeInterpreter.generate(ByteCodeInterpreter.LOAD, address);
-        } else {
-            int value = Integer.parseInt(token.getValue());
-            bytecodeInterpreter.generate(ByteCodeInterpreter.LOADI, value);
+    // Parses the rest of "( expression )" after the opening parenthesis
+    private boolean parseParenthesized() {
+        if (!parsePrimary("at the start of expression") || !parseOperators(1)) {
+            return false;
         }
+        if (next() != Lexer.RPARENKIND) {
+            error(Diagnostic.Kind.EXPECTING_CLOSING_PARENTHESIS, line, null, "Error: Expecting closing parenthesis, line " + line);
+            return false;
+        }
+        return true;
+    }
 
+    // Applies every following operator that binds at least as tightly as minPrecedence to the accumulator
+    private boolean parseOperators(int minPrecedence) {
         // Process subsequent operators and operands
-        while (index < tokeList.size()) {
-            token = tokeList.get(index);  // Peek at the next token (without advancing)
+        while (precedence(peek()) >= minPrecedence) {  // Peek at the next token (without advancing)
+            int operator = next();  // Move past the operator
+            int precedence = precedence(operator);
 
-            // Check for operators
-            if (token.getType().equals(Lexer.PLUSTOKEN)) {
-                index++;  // Move past the operator
-
-                // After an operator, we expect an identifier or integer
-                token = tokeList.get(index++);  // Fetch and advance token
-                if (!token.getType().equals(Lexer.IDTOKEN) && !token.getType().equals(Lexer.INTTOKEN)) {
-                    System.out.println("Error: Expected identifier or integer after operator, line " + token.getLineNumber());
+            // After an operator, we expect an identifier, an integer or a parenthesized expression
+            next();  // Fetch and advance token
+            if (kind == Lexer.LPARENKIND) {
+                // Evaluate the subexpression on its own, with the left operand saved on the stack
+                generate(ByteCodeInterpreter.PUSH, 0);
+                if (!parseParenthesized() || !parseOperators(precedence + 1)) {
                     return false;
                 }
+                generate(popCommand(operator), 0);
+                continue;
+            }
+            if (!isId(kind) && kind != Lexer.INTKIND) {
+                error(Diagnostic.Kind.EXPECTING_OPERAND, line, null, "Error: Expected identifier or integer after operator, line " + line);
+                return false;
+            }
+            if (!resolveOperand()) {
+                return false;
+            }
 
-                // If it's an identifier, ensure it is defined
-                if (token.getType().equals(Lexer.IDTOKEN)) {
-                    int address = idTable.getAddress(token.getValue());
-                    if (address == -1) {
-                        System.out.println("Error: Identifier '" + token.getValue() + "' is not defined, line " + token.getLineNumber());
-                        return false;  // Undefined identifier
-                    }
-                    bytecodeInterpreter.generate(ByteCodeInterpreter.LOAD, address);
-                } else {
-                    int value = Integer.parseInt(token.getValue());
-                    bytecodeInterpreter.generate(ByteCodeInterpreter.LOADI, value);
+            if (precedence(peek()) > precedence) {
+                // A tighter operator follows, e.g. the b in a - b * c: compute b * c first
+                generate(ByteCodeInterpreter.PUSH, 0);
+                generate(operandCommand, operandValue);
+                if (!parseOperators(precedence + 1)) {
+                    return false;
                 }
-
+                generate(popCommand(operator), 0);
             } else {
-                // No operator, so we stop the expression parsing
-                break;
+                generate(applyCommand(operator, operandCommand), operandValue);
             }
         }
+        return true;
+    }
 
-        // After processing the expression, store the result in the specified memory address
-        bytecodeInterpreter.generate(ByteCodeInterpreter.STORE, storeAddress);
+    // Binary operator precedence, 0 when the token is not a binary operator
+    private static int precedence(int kind) {
+        switch (kind) {
+            case Lexer.PLUSKIND:
+            case Lexer.SUBKIND:
+                return 1;
+            case Lexer.MULTKIND:
+            case Lexer.DIVKIND:
+                return 2;
+            default:
+                return 0;
+        }
+    }
 
-        return true;  // Expression is valid
+    // Command applying an operator to the accumulator and a memory (LOAD) or immediate (LOADI) operand
+    private static int applyCommand(int operator, int loadCommand) {
+        boolean immediate = loadCommand == ByteCodeInterpreter.LOADI;
+        switch (operator) {
+            case Lexer.SUBKIND:
+                return immediate ? ByteCodeInterpreter.SUBI : ByteCodeInterpreter.SUB;
+            case Lexer.MULTKIND:
+                return immediate ? ByteCodeInterpreter.MULTI : ByteCodeInterpreter.MULT;
+            case Lexer.DIVKIND:
+                return immediate ? ByteCodeInterpreter.DIVI : ByteCodeInterpreter.DIV;
+            default:
+                return loadCommand;  // LOAD and LOADI already add
+        }
     }
-    // Parse an identifier and check/add to the IdTable
-    public boolean parseId(Token token, boolean isLeftHandSide) {
-        if (token.getType().equals(Lexer.IDTOKEN)) {
-            String id = token.getValue();
-            if (isLeftHandSide) {
-                // On the left-hand side, add the identifier to the IdTable
-                idTable.addEntry(id);
+
+    // Command combining the value saved by PUSH with the accumulator
+    private static int popCommand(int operator) {
+        switch (operator) {
+            case Lexer.SUBKIND:
+                return ByteCodeInterpreter.POPSUB;
+            case Lexer.MULTKIND:
+                return ByteCodeInterpreter.POPMULT;
+            case Lexer.DIVKIND:
+                return ByteCodeInterpreter.POPDIV;
+            default:
+                return ByteCodeInterpreter.POPADD;
+        }
+    }
+
+    // Turns the identifier or integer token last consumed into operandCommand (LOAD or LOADI) and operandValue.
+    // This reads the lexeme, so it has to happen before the next peek.
+    private boolean resolveOperand() {
+        if (isId(kind)) {
+            // If it's an identifier, ensure it is defined before proceeding
+            int address = partition != null ? partition.use(local(), index) : lookup(idTable);
+            if (address == -1) {
+                String id = lexeme();
+                error(Diagnostic.Kind.UNDEFINED_IDENTIFIER, line, id, "Error: Identifier '" + id + "' is not defined, line " + line);
+                return false;  // Undefined identifier
+            }
+            operandCommand = ByteCodeInterpreter.LOAD;
+            operandValue = address;
+        } else {
+            operandCommand = ByteCodeInterpreter.LOADI;
+            // Short integers were parsed by the Lexer; longer ones may not fit and are checked here
+            if (length <= Lexer.MAX_INLINE_DIGITS) {
+                operandValue = value;
             } else {
-                // On the right-hand side, check if the identifier is already defined
-                if (idTable.getAddress(id) == -1) {
-                    System.out.println("Error: Identifier '" + id + "' used but not defined, line " + token.getLineNumber());
+                String digits = lexeme();
+                try {
+                    operandValue = Integer.parseInt(digits);
+                } catch (NumberFormatException e) {
+                    error(Diagnostic.Kind.INVALID_INTEGER, line, null, "Error: Integer " + digits + " out of range, line " + line);
                     return false;
                 }
             }
-            return true;  // Identifier handled successfully
+        }
+        return true;
+    }
+
+    // Parse an identifier and check/add to the IdTable
+    public boolean parseId(Token token, boolean isLeftHandSide) {
+        if (token.getType().equals(Lexer.IDTOKEN)) {
+            return parseId(token.getValue(), token.getLineNumber(), isLeftHandSide);
         } else {
-            System.out.println("Error: Expecting identifier, line " + token.getLineNumber());
+            error(Diagnostic.Kind.EXPECTING_IDENTIFIER, token.getLineNumber(), null,
+                    "Error: Expecting identifier, line " + token.getLineNumber());
             return false;
         }
     }
 
+    private boolean parseId(String id, int lineNumber, boolean isLeftHandSide) {
+        if (isLeftHandSide) {
+            // On the left-hand side, add the identifier to the IdTable
+            idTable.addEntry(id);
+        } else {
+            // On the right-hand side, check if the identifier is already defined
+            if (idTable.getAddress(id) == -1) {
+                error(Diagnostic.Kind.UNDEFINED_IDENTIFIER, lineNumber, id,
+                        "Error: Identifier '" + id + "' used but not defined, line " + lineNumber);
+                return false;
+            }
+        }
+        return true;  // Identifier handled successfully
+    }
+
+    // Stops parseProgram() from printing errors, the result and the IdTable
+    public void setQuiet(boolean quiet) {
+        this.quiet = quiet;
+    }
+
+    // First error message of the parse, as it is printed, or null if there was none
+    public String getError() {
+        return error;
+    }
+
+    // Every error of the parse with its kind, line and identifier; parsing stops at the first one
+    public List<Diagnostic> getDiagnostics() {
+        return new ArrayList<>(diagnostics);
+    }
+
+    public IdTable getIdTable() {
+        return this.idTable;
+    }
+
     public ByteCodeInterpreter getByteCodeInterpreter() {
         return this.bytecodeInterpreter;
     }
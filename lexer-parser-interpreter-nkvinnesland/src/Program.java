@@ -0,0 +1,257 @@
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * A compiled program: its code, the layout of its IdTable and the memory size it needs.
+ * Immutable, so one instance can be cached and shared between threads. It runs on an
+ * ExecutionContext that holds the state of one execution, with the same results and
+ * run-time errors as ByteCodeInterpreter.run().
+ * @see ProgramCache
+ * @see ExecutionContext
+ */
+public final class Program {
+
+    private final int[] code;
+    private final String[] identifiers;  // Indexed by address
+    private final HashMap<String, Integer> addresses = new HashMap<>();
+    private final int memorySize;
+    private final boolean verified;  // Passed BytecodeVerifier, so execution skips the per-instruction checks
+    private final LineTable lines;   // Source line of each command, empty if unknown
+
+    public Program(int[] code, String[] identifiers, int memorySize) {
+        this(code, identifiers, memorySize, new LineTable());
+    }
+
+    // A program whose run-time errors report the source lines of lines
+    public Program(int[] code, String[] identifiers, int memorySize, LineTable lines) {
+        this.code = code.clone();
+        this.lines = new LineTable();
+        this.lines.append(lines, 0);
+        this.identifiers = identifiers.clone();
+        this.memorySize = memorySize;
+        for (int address = 0; address < identifiers.length; address++) {
+            addresses.put(identifiers[address], address);
+        }
+        this.verified = BytecodeVerifier.verify(code, code.length, memorySize).isEmpty();
+    }
+
+    /**
+     * Lexes and parses source text without printing anything
+     * @param source the program text
+     * @param inputs identifiers the program may read without assigning them, see IdTable.declareInput
+     * @return the compiled program
+     * @throws IllegalArgumentException if the source is not a valid program; the message is the parser's error
+     */
+    public static Program compile(String source, String... inputs) {
+        Parser parser = new Parser(Lexer.fromSource(source));
+        parser.setQuiet(true);
+        for (String input : inputs) {
+            parser.getIdTable().declareInput(input);
+        }
+        if (!parser.parseProgram()) {
+            throw new IllegalArgumentException(parser.getError());
+        }
+        return of(parser.getByteCodeInterpreter(), parser.getIdTable());
+    }
+
+    // Snapshot of the code an interpreter holds and the IdTable it was generated with
+    public static Program of(ByteCodeInterpreter interpreter, IdTable idTable) {
+        return new Program(interpreter.getCode(), idTable.getIdentifiers(), interpreter.getMemorySize(),
+                interpreter.getLineTable());
+    }
+
+    // A new interpreter loaded with the code and a zeroed memory, ready to run()
+    public ByteCodeInterpreter newInterpreter() {
+        ByteCodeInterpreter interpreter = new ByteCodeInterpreter(memorySize);
+        interpreter.replaceCode(code, code.length);
+        return interpreter;
+    }
+
+    // A context sized for this program
+    public ExecutionContext newContext() {
+        return new ExecutionContext(memorySize);
+    }
+
+    // Runs the whole program once on the context, like ByteCodeInterpreter.run()
+    public void execute(ExecutionContext context) {
+        resume(context, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Runs at most maxInstructions commands, starting where the context stopped last time
+     * @param context the execution state, which must have room for getMemorySize() values
+     * @param maxInstructions instruction budget for this call
+     * @return true if the run finished; the context's pc is then back at 0 for the next run
+     */
+    public boolean resume(ExecutionContext context, int maxInstructions) {
+        if (context.memory.length < memorySize) {
+            throw new IllegalArgumentException("Context memory is smaller than the program needs");
+        }
+        int end = code.length & ~1;  // Only complete command + operand pairs are executed
+        int stop = (int) Math.min(end, context.pc + 2L * maxInstructions);
+        run(context, context.pc, stop);
+        if (stop < end) {
+            context.pc = stop;
+            return false;
+        }
+        if (end != code.length) {
+            error(context, Diagnostic.Kind.MISSING_OPERAND, end, "Invalid bytecode: Missing operand for command at index " + end);
+        }
+        context.pc = 0;
+        return true;
+    }
+
+    // The interpreter loop for contexts: runs the commands from code index start up to stop, which
+    // must both be even. Also runs each task of DependencyGraph.
+    void run(ExecutionContext context, int start, int stop) {
+        int[] code = this.code;
+        int[] memory = context.memory;
+        int accumulator = context.accumulator;
+        for (int pc = start; pc < stop; pc += 2) {
+            int command = code[pc];
+            int operand = code[pc + 1];
+            switch (command) {
+                case ByteCodeInterpreter.LOAD:
+                    if (verified || checkAddress(context, pc, operand)) {
+                        accumulator += memory[operand];
+                    }
+                    break;
+                case ByteCodeInterpreter.LOADI:
+                    accumulator += operand;
+                    break;
+                case ByteCodeInterpreter.STORE:
+                    if (verified || checkAddress(context, pc, operand)) {
+                        memory[operand] = accumulator;
+                        accumulator = 0;
+                    }
+                    break;
+                case ByteCodeInterpreter.SUB:
+                    if (verified || checkAddress(context, pc, operand)) {
+                        accumulator -= memory[operand];
+                    }
+                    break;
+                case ByteCodeInterpreter.SUBI:
+                    accumulator -= operand;
+                    break;
+                case ByteCodeInterpreter.MULT:
+                    if (verified || checkAddress(context, pc, operand)) {
+                        accumulator *= memory[operand];
+                    }
+                    break;
+                case ByteCodeInterpreter.MULTI:
+                    accumulator *= operand;
+                    break;
+                case ByteCodeInterpreter.DIV:
+                    if (verified || checkAddress(context, pc, operand)) {
+                        accumulator = ByteCodeInterpreter.divide(accumulator, memory[operand], context, this, pc, operand);
+                    }
+                    break;
+                case ByteCodeInterpreter.DIVI:
+                    accumulator = ByteCodeInterpreter.divide(accumulator, operand, context, this, pc, -1);
+                    break;
+                case ByteCodeInterpreter.PUSH:
+                    if (context.stackSize == context.stack.length) {
+                        context.stack = Arrays.copyOf(context.stack, context.stackSize * 2);
+                    }
+                    context.stack[context.stackSize++] = accumulator;
+                    accumulator = 0;
+                    break;
+                case ByteCodeInterpreter.POPADD:
+                    accumulator = pop(context, pc) + accumulator;
+                    break;
+                case ByteCodeInterpreter.POPSUB:
+                    accumulator = pop(context, pc) - accumulator;
+                    break;
+                case ByteCodeInterpreter.POPMULT:
+                    accumulator = pop(context, pc) * accumulator;
+                    break;
+                case ByteCodeInterpreter.POPDIV:
+                    accumulator = ByteCodeInterpreter.divide(pop(context, pc), accumulator, context, this, pc, -1);
+                    break;
+                default:
+                    error(context, Diagnostic.Kind.INVALID_COMMAND, pc, ByteCodeInterpreter.INVALID_COMMAND_MESSAGE);
+            }
+        }
+        context.accumulator = accumulator;
+    }
+
+    // Same checks and messages as ByteCodeInterpreter, reported through the context
+    private boolean checkAddress(ExecutionContext context, int pc, int address) {
+        if (address < 0 || address >= memorySize) {
+            error(context, Diagnostic.Kind.ADDRESS_OUT_OF_BOUNDS, pc, ByteCodeInterpreter.ADDRESS_OUT_OF_BOUNDS_MESSAGE);
+            return false;
+        }
+        return true;
+    }
+
+    private int pop(ExecutionContext context, int pc) {
+        if (context.stackSize == 0) {
+            error(context, Diagnostic.Kind.EMPTY_STACK, pc, ByteCodeInterpreter.EMPTY_STACK_MESSAGE);
+            return 0;
+        }
+        return context.stack[--context.stackSize];
+    }
+
+    // Identifier at a memory address, or null when the address has none. Memory smaller than the
+    // identifiers means SlotAllocator let them share slots, so no address names one identifier.
+    String identifierAt(int address) {
+        if (address < 0 || address >= identifiers.length || memorySize < identifiers.length) {
+            return null;
+        }
+        return identifiers[address];
+    }
+
+    private void error(ExecutionContext context, Diagnostic.Kind kind, int pc, String message) {
+        ByteCodeInterpreter.report(context, kind, lines.getLine(pc), null, message);
+    }
+
+    // Source line of the command at code index pc, -1 if unknown
+    public int getLine(int pc) {
+        return lines.getLine(pc);
+    }
+
+    // True if the code passed BytecodeVerifier against getMemorySize()
+    public boolean isVerified() {
+        return verified;
+    }
+
+    // A new IdTable with the same identifiers at the same addresses
+    public IdTable newIdTable() {
+        IdTable idTable = new IdTable();
+        for (String id : identifiers) {
+            idTable.addEntry(id);
+        }
+        return idTable;
+    }
+
+    // Address of an identifier, -1 if the program does not define it
+    public int getAddress(String id) {
+        Integer address = addresses.get(id);
+        return address == null ? -1 : address;
+    }
+
+    public int[] getCode() {
+        return code.clone();
+    }
+
+    public int getCodeLength() {
+        return code.length;
+    }
+
+    public String[] getIdentifiers() {
+        return identifiers.clone();
+    }
+
+    public int getMemorySize() {
+        return memorySize;
+    }
+
+    @Override
+    public String toString() {
+        return "Program{" +
+                "code=" + Arrays.toString(code) +
+                ", identifiers=" + Arrays.toString(identifiers) +
+                ", memorySize=" + memorySize +
+                '}';
+    }
+}
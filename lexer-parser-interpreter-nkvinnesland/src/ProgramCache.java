@@ -0,0 +1,128 @@
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compiled programs keyed by the SHA-256 of their source text, so that a script seen before goes
+ * straight to execution without lexing or parsing. The cache is bounded by a number of entries
+ * and by the total code size, and evicts the least recently used program first.
+ * Safe to use from many threads. Compilation happens outside the lock, so two threads missing
+ * on the same new script may both compile it; the first result is kept.
+ * @see Program
+ */
+public class ProgramCache {
+
+    private final int maxEntries;
+    private final long maxCodeSize;  // Sum of Program.getCodeLength() over all entries
+
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Program> programs = new LinkedHashMap<>(16, 0.75f, true);
+    private long codeSize = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ProgramCache(int maxEntries) {
+        this(maxEntries, Long.MAX_VALUE);
+    }
+
+    public ProgramCache(int maxEntries, long maxCodeSize) {
+        if (maxEntries < 1 || maxCodeSize < 1) {
+            throw new IllegalArgumentException("Cache bounds must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.maxCodeSize = maxCodeSize;
+    }
+
+    /**
+     * Returns the compiled program for source, compiling and caching it on a miss
+     * @param source the program text
+     * @return the compiled program
+     * @throws IllegalArgumentException if the source is not a valid program; nothing is cached then
+     */
+    public Program getOrCompile(String source) {
+        String key = hash(source);
+        synchronized (this) {
+            Program program = programs.get(key);
+            if (program != null) {
+                hits.incrementAndGet();
+                return program;
+            }
+        }
+        misses.incrementAndGet();
+        Program compiled = Program.compile(source);
+        synchronized (this) {
+            Program existing = programs.putIfAbsent(key, compiled);
+            if (existing != null) {
+                return existing;  // Another thread compiled it first
+            }
+            codeSize += compiled.getCodeLength();
+            evict();
+        }
+        return compiled;
+    }
+
+    // Drops least recently used programs until both bounds hold again; the newest entry always stays
+    private void evict() {
+        Iterator<Map.Entry<String, Program>> eldest = programs.entrySet().iterator();
+        while ((programs.size() > maxEntries || codeSize > maxCodeSize) && programs.size() > 1) {
+            codeSize -= eldest.next().getValue().getCodeLength();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    // SHA-256 of the UTF-8 source text, as hex
+    static String hash(String source) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);  // Every JVM provides SHA-256
+        }
+    }
+
+    public synchronized int size() {
+        return programs.size();
+    }
+
+    public synchronized long getCodeSize() {
+        return codeSize;
+    }
+
+    public synchronized void clear() {
+        programs.clear();
+        codeSize = 0;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ProgramCache{" +
+                "entries=" + size() +
+                ", hits=" + getHits() +
+                ", misses=" + getMisses() +
+                ", evictions=" + getEvictions() +
+                '}';
+    }
+}
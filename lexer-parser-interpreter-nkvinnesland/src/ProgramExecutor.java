@@ -0,0 +1,117 @@
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs shared Programs concurrently, each execution on its own ExecutionContext. Contexts are
+ * pooled by memory size and reset between runs, so once the pools are warm no memory is allocated
+ * per execution for program state.
+ * By default every task gets a virtual thread when the JVM has them (Java 21 and later), so
+ * thousands of executions can be in flight at once; older JVMs use one platform thread per core.
+ * @see Program
+ * @see ExecutionContext
+ */
+public class ProgramExecutor implements AutoCloseable {
+
+    // Idle contexts kept per memory size
+    public static final int DEFAULT_POOL_CAPACITY = 1024;
+
+    private final ExecutorService executor;
+    private final int poolCapacity;
+    private final ConcurrentHashMap<Integer, ArrayBlockingQueue<ExecutionContext>> pools = new ConcurrentHashMap<>();
+    private final AtomicLong contextsCreated = new AtomicLong();
+
+    public ProgramExecutor() {
+        this(newDefaultExecutor(), DEFAULT_POOL_CAPACITY);
+    }
+
+    public ProgramExecutor(ExecutorService executor, int poolCapacity) {
+        this.executor = executor;
+        this.poolCapacity = poolCapacity;
+    }
+
+    // Virtual threads through reflection, since this project still compiles for Java 17
+    static ExecutorService newDefaultExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, "program-executor");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Runs the program once and returns what result reads from the final state
+     * @param program the program to run
+     * @param inputs sets up the fresh context before the run, e.g. input values; may be null
+     * @param result reads the answer from the context after the run; must not keep the context
+     * @return the future result
+     */
+    public <T> Future<T> submit(Program program, Consumer<ExecutionContext> inputs, Function<ExecutionContext, T> result) {
+        return executor.submit(() -> {
+            ExecutionContext context = acquire(program.getMemorySize());
+            try {
+                if (inputs != null) {
+                    inputs.accept(context);
+                }
+                program.execute(context);
+                return result.apply(context);
+            } finally {
+                release(context);
+            }
+        });
+    }
+
+    public <T> Future<T> submit(Program program, Function<ExecutionContext, T> result) {
+        return submit(program, null, result);
+    }
+
+    // Takes an idle context of the right size, or creates one when the pool is empty
+    ExecutionContext acquire(int memorySize) {
+        ExecutionContext context = pool(memorySize).poll();
+        if (context == null) {
+            contextsCreated.incrementAndGet();
+            return new ExecutionContext(memorySize);
+        }
+        return context;
+    }
+
+    // Returns a context to its pool, dropping it when the pool is full
+    void release(ExecutionContext context) {
+        context.reset();
+        pool(context.getMemorySize()).offer(context);
+    }
+
+    private ArrayBlockingQueue<ExecutionContext> pool(int memorySize) {
+        ArrayBlockingQueue<ExecutionContext> pool = pools.get(memorySize);
+        if (pool == null) {
+            pool = pools.computeIfAbsent(memorySize, size -> new ArrayBlockingQueue<>(poolCapacity));
+        }
+        return pool;
+    }
+
+    // Number of contexts allocated so far; stops growing once the pools cover the concurrency
+    public long getContextsCreated() {
+        return contextsCreated.get();
+    }
+
+    // Waits for submitted executions to finish and stops the threads
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.zip.CRC32;
+
+/**
+ * Binary file format for compiled programs, so that a process can start running without lexing
+ * and parsing. Layout, with every number after the version stored as an unsigned LEB128 varint:
+ * <pre>
+ *   magic "LPIB", version (2 bytes, big-endian)
+ *   UTF-8 length and bytes of the SHA-256 of the source, as hex; length 0 when there is no source
+ *   memory size, identifier count, then per identifier its UTF-8 length and bytes, by address
+ *   instruction count, then per instruction the command and the zigzag-encoded operand
+ *   CRC32 of everything before it (4 bytes, big-endian)
+ * </pre>
+ * Small operands, which is almost all of them, take one byte instead of four.
+ * The code is not executed from the mapped file. Varints have no fixed width, so running from the
+ * buffer would decode every instruction again on every run, and Program, which is shared between
+ * threads and verified once, needs its code as an int[]. read() therefore decodes the mapped bytes
+ * in one pass straight into that int[], with no intermediate lists, and the file is not read again.
+ * @see Program
+ */
+public class ProgramFile {
+
+    public static final int MAGIC = 0x4C504942;  // "LPIB"
+    public static final int FORMAT_VERSION = 2;
+    public static final String EXTENSION = ".lpb";
+
+    /**
+     * Thrown by load() when the file was compiled from another version of the source
+     */
+    public static class StaleProgramException extends IOException {
+        public StaleProgramException() {
+            super("Program file was compiled from a different source");
+        }
+    }
+
+    /**
+     * Thrown when a file holds a different format version than this build reads
+     */
+    public static class VersionMismatchException extends IOException {
+        public VersionMismatchException(int version) {
+            super("Unsupported program file version " + version + ", expected " + FORMAT_VERSION);
+        }
+    }
+
+    // Encodes a program in the binary format, without a source hash
+    public static byte[] encode(Program program) {
+        return encode(program, null);
+    }
+
+    // Encodes a program compiled from source, recording its hash so that load() can tell it changed
+    public static byte[] encode(Program program, String source) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(80 + program.getCodeLength() * 2);
+        writeInt(out, MAGIC);
+        out.write(FORMAT_VERSION >>> 8);
+        out.write(FORMAT_VERSION);
+        writeString(out, source == null ? "" : ProgramCache.hash(source));
+        writeVarint(out, program.getMemorySize());
+        String[] identifiers = program.getIdentifiers();
+        writeVarint(out, identifiers.length);
+        for (String id : identifiers) {
+            writeString(out, id);
+        }
+        int[] code = program.getCode();
+        writeVarint(out, code.length / 2);
+        for (int i = 0; i + 1 < code.length; i += 2) {
+            writeVarint(out, code[i]);
+            writeVarint(out, (code[i + 1] << 1) ^ (code[i + 1] >> 31));  // Zigzag, so small negatives stay short
+        }
+        CRC32 crc = new CRC32();
+        crc.update(out.toByteArray());
+        writeInt(out, (int) crc.getValue());
+        return out.toByteArray();
+    }
+
+    public static void write(Program program, Path file) throws IOException {
+        Files.write(file, encode(program));
+    }
+
+    public static void write(Program program, Path file, String source) throws IOException {
+        Files.write(file, encode(program, source));
+    }
+
+    /**
+     * Maps the file into memory and decodes it in one pass straight into the program's int[] code
+     * @param file a file written by write()
+     * @return the program
+     * @throws VersionMismatchException if the file has another format version
+     * @throws IOException if the file cannot be read, is not a program file or is corrupt
+     */
+    public static Program read(Path file) throws IOException {
+        return read(file, null);
+    }
+
+    // Like read(file), but throws a StaleProgramException unless the file records sourceHash
+    private static Program read(Path file, String sourceHash) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            return decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), sourceHash);
+        }
+    }
+
+    // Decodes the binary format from the buffer's position to its limit
+    public static Program decode(ByteBuffer bytes) throws IOException {
+        return decode(bytes, null);
+    }
+
+    private static Program decode(ByteBuffer bytes, String sourceHash) throws IOException {
+        int start = bytes.position();
+        int end = bytes.limit();
+        if (end - start < 10 || bytes.getInt(start) != MAGIC) {
+            throw new IOException("Not a program file");
+        }
+        int version = bytes.getShort(start + 4) & 0xFFFF;
+        if (version != FORMAT_VERSION) {
+            throw new VersionMismatchException(version);
+        }
+        CRC32 crc = new CRC32();
+        ByteBuffer checked = bytes.duplicate();
+        checked.position(start).limit(end - 4);
+        crc.update(checked);
+        if ((int) crc.getValue() != bytes.getInt(end - 4)) {
+            throw new IOException("Program file checksum mismatch");
+        }
+
+        try {
+            ByteBuffer in = bytes.duplicate();
+            in.position(start + 6).limit(end - 4);
+            String recordedHash = readString(in);
+            if (sourceHash != null && !sourceHash.equals(recordedHash)) {
+                throw new StaleProgramException();
+            }
+            int memorySize = readVarint(in);
+            String[] identifiers = new String[readVarint(in)];
+            for (int i = 0; i < identifiers.length; i++) {
+                identifiers[i] = readString(in);
+            }
+            int[] code = new int[Math.multiplyExact(readVarint(in), 2)];
+            for (int i = 0; i < code.length; i += 2) {
+                code[i] = readVarint(in);
+                int zigzag = readVarint(in);
+                code[i + 1] = (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+            if (in.hasRemaining()) {
+                throw new IOException("Trailing bytes in program file");
+            }
+            return new Program(code, identifiers, memorySize);
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed program file", e);  // Counts that do not match the data
+        }
+    }
+
+    /**
+     * Loads a compiled program, recompiling it from source when the file is missing, was written
+     * by another format version, is corrupt, or was compiled from a source that has changed since
+     * (its SHA-256 no longer matches). A recompiled program is written back to the file.
+     * @param file the binary program
+     * @param source the source it was compiled from, or null if there is none
+     * @return the program
+     * @throws IOException if the file cannot be used and there is no source to fall back on
+     */
+    public static Program load(Path file, Path source) throws IOException {
+        if (source == null) {
+            return read(file);
+        }
+        String text = Files.readString(source, StandardCharsets.UTF_8);
+        try {
+            return read(file, ProgramCache.hash(text));
+        } catch (IOException e) {
+            // Recompile below
+        }
+        Program program = Program.compile(text);
+        write(program, file, text);
+        return program;
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    // Unsigned LEB128: seven bits per byte, high bit set on every byte but the last
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    // UTF-8 length as a varint, then the bytes
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readString(ByteBuffer in) throws IOException {
+        byte[] bytes = new byte[readVarint(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int readVarint(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint longer than 5 bytes");
+    }
+
+    /**
+     * Command line: compile sources into binary programs, or run a binary program
+     *   java ProgramFile compile prog.txt [prog.lpb]
+     *   java ProgramFile run prog.lpb
+     * @param args the command and its files
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 2 && args[0].equals("compile")) {
+            Path source = Paths.get(args[1]);
+            Path target = args.length > 2 ? Paths.get(args[2]) : binaryPathFor(source);
+            String text = Files.readString(source, StandardCharsets.UTF_8);
+            Program program = Program.compile(text);
+            write(program, target, text);
+            System.out.println("Wrote " + target + " (" + Files.size(target) + " bytes)");
+        } else if (args.length == 2 && args[0].equals("run")) {
+            Program program = read(Paths.get(args[1]));
+            ByteCodeInterpreter interpreter = program.newInterpreter();
+            interpreter.run();
+            System.out.println(interpreter);
+        } else {
+            System.out.println("Usage: ProgramFile compile <source.txt> [<program" + EXTENSION + ">]");
+            System.out.println("       ProgramFile run <program" + EXTENSION + ">");
+        }
+    }
+
+    // prog.txt -> prog.lpb next to it
+    static Path binaryPathFor(Path source) {
+        String name = source.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return source.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + EXTENSION);
+    }
+}
@@ -0,0 +1,87 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Generates random but valid programs for benchmarks and tests.
+ * Every identifier is defined before it is used, and the same seed always
+ * produces the same program.
+ */
+public class ProgramGenerator {
+
+    private long seed;
+    private int statements;        // Number of assignments
+    private int variables;         // Number of distinct identifiers
+    private int expressionLength;  // Operands per expression
+    private String operators;      // Operators to pick from, e.g. "+" or "+-*/"
+
+    public ProgramGenerator(long seed, int statements, int variables, int expressionLength, String operators) {
+        if (statements < 1 || variables < 1 || expressionLength < 1 || operators.isEmpty()) {
+            throw new IllegalArgumentException("statements, variables, expressionLength and operators must not be empty");
+        }
+        this.seed = seed;
+        this.statements = statements;
+        this.variables = variables;
+        this.expressionLength = expressionLength;
+        this.operators = operators;
+    }
+
+    /**
+     * Builds the program text, one assignment per line
+     * @return source code of the program
+     */
+    public String generate() {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(statements * (8 + expressionLength * 8));
+        for (int i = 0; i < statements; i++) {
+            int defined = Math.min(i, variables);  // Identifiers v0 .. v(defined - 1) can be read
+            sb.append('v').append(i % variables).append(" = ");
+            appendOperand(sb, random, defined, false);
+            for (int j = 1; j < expressionLength; j++) {
+                char operator = operators.charAt(random.nextInt(operators.length()));
+                sb.append(' ').append(operator).append(' ');
+                appendOperand(sb, random, defined, operator == '/');
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    // Appends a literal or an already defined identifier; divisors are always non-zero literals
+    private void appendOperand(StringBuilder sb, Random random, int defined, boolean divisor) {
+        if (divisor) {
+            sb.append(1 + random.nextInt(99));
+        } else if (defined > 0 && random.nextBoolean()) {
+            sb.append('v').append(random.nextInt(defined));
+        } else {
+            sb.append(random.nextInt(1000));
+        }
+    }
+
+    /**
+     * Writes the program to a file so it can be handed to a Lexer
+     * @param file where to write
+     */
+    public void writeTo(Path file) throws IOException {
+        Files.writeString(file, generate());
+    }
+
+    /**
+     * Writes a program to a file
+     * @param args output file, statements, variables, expression length, operators, seed
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: ProgramGenerator <output file> [statements] [variables] [expressionLength] [operators] [seed]");
+            return;
+        }
+        int statements = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int variables = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int expressionLength = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+        String operators = args.length > 4 ? args[4] : "+";
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 42;
+        new ProgramGenerator(seed, statements, variables, expressionLength, operators).writeTo(Paths.get(args[0]));
+    }
+}
@@ -0,0 +1,320 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Runs many programs over a fixed pool of worker threads in slices of at most quantum
+ * instructions, so that one long script cannot hold a worker until it finishes. A program that
+ * has used its slice goes back to the end of its tenant's queue and later resumes from the pc and
+ * accumulator saved in its ExecutionContext.
+ * Tenants share the workers in proportion to their weights (stride scheduling): every executed
+ * instruction advances the tenant's virtual time by 1/weight, and the next slice goes to the
+ * tenant with work queued and the smallest virtual time.
+ * @see Program#resume(ExecutionContext, int)
+ */
+public class ProgramScheduler implements AutoCloseable {
+
+    public static final int DEFAULT_QUANTUM = 10_000;
+    public static final int DEFAULT_WEIGHT = 1;
+
+    // Latencies kept per tenant for the percentiles
+    private static final int LATENCY_SAMPLES = 4096;
+
+    /**
+     * Thrown through Task.getResult() when a program runs out of its instruction budget
+     */
+    public static class BudgetExceededException extends RuntimeException {
+        public BudgetExceededException(long budget) {
+            super("Instruction budget of " + budget + " exhausted");
+        }
+    }
+
+    /**
+     * One submitted run of a program, with its result and metrics
+     */
+    public static class Task {
+        private final Tenant tenant;
+        private final Program program;
+        private final ExecutionContext context;
+        private final long budget;
+        private final CompletableFuture<ExecutionContext> result = new CompletableFuture<>();
+        private final long submitted = System.nanoTime();
+        private long enqueued = submitted;
+        private long queueWait = 0;
+        private long latency = -1;
+        private long finished = -1;
+        private long instructions = 0;
+        private int slices = 0;
+
+        private Task(Tenant tenant, Program program, ExecutionContext context, long budget) {
+            this.tenant = tenant;
+            this.program = program;
+            this.context = context;
+            this.budget = budget;
+        }
+
+        // The context after the run, a BudgetExceededException, or the exception the program threw
+        public CompletableFuture<ExecutionContext> getResult() {
+            return result;
+        }
+
+        public String getTenant() {
+            return tenant.name;
+        }
+
+        // Total time spent queued, waiting for a worker, across all slices
+        public synchronized long getQueueWaitNanos() {
+            return queueWait;
+        }
+
+        // Time from submit to completion, -1 while still running
+        public synchronized long getLatencyNanos() {
+            return latency;
+        }
+
+        // System.nanoTime() when the run completed, -1 while still running
+        public synchronized long getFinishedNanos() {
+            return finished;
+        }
+
+        public synchronized long getInstructions() {
+            return instructions;
+        }
+
+        public synchronized int getSlices() {
+            return slices;
+        }
+    }
+
+    private static class Tenant {
+        final String name;
+        int weight = DEFAULT_WEIGHT;
+        double virtualTime = 0;
+        final ArrayDeque<Task> queue = new ArrayDeque<>();
+        final long[] latencies = new long[LATENCY_SAMPLES];
+        long completed = 0;
+
+        Tenant(String name) {
+            this.name = name;
+        }
+    }
+
+    private final int quantum;
+    private final HashMap<String, Tenant> tenants = new HashMap<>();
+    private final Thread[] workers;
+    private double minVirtualTime = 0;  // Virtual time of the last tenant picked
+    private boolean paused;  // Workers take no slices until start()
+    private boolean closed = false;
+
+    public ProgramScheduler(int workerCount) {
+        this(workerCount, DEFAULT_QUANTUM);
+    }
+
+    public ProgramScheduler(int workerCount, int quantum) {
+        this(workerCount, quantum, false);
+    }
+
+    /**
+     * @param workerCount number of worker threads
+     * @param quantum most instructions a program runs before it goes back to its queue
+     * @param paused if true, tasks are only queued until start() is called, e.g. to submit a
+     * batch whose order of execution should depend only on the tenants' weights
+     */
+    public ProgramScheduler(int workerCount, int quantum, boolean paused) {
+        if (workerCount < 1 || quantum < 1) {
+            throw new IllegalArgumentException("Workers and quantum must be positive");
+        }
+        this.quantum = quantum;
+        this.paused = paused;
+        workers = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Thread(this::work, "program-scheduler-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    // Lets the workers take slices, after the scheduler was created paused
+    public synchronized void start() {
+        paused = false;
+        notifyAll();
+    }
+
+    // Share of the workers a tenant gets relative to the others
+    public synchronized void setTenantWeight(String tenant, int weight) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("Weight must be positive");
+        }
+        tenant(tenant).weight = weight;
+    }
+
+    /**
+     * Queues one run of a program
+     * @param tenant the tenant the run is accounted to
+     * @param program the program to run on a fresh context
+     * @param inputs sets up the context before the run; may be null
+     * @param instructionBudget most instructions the run may execute, 0 for no limit
+     * @return the task, whose result completes when the run finishes
+     */
+    public Task submit(String tenant, Program program, Consumer<ExecutionContext> inputs, long instructionBudget) {
+        ExecutionContext context = program.newContext();
+        if (inputs != null) {
+            inputs.accept(context);
+        }
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Scheduler is closed");
+            }
+            Tenant owner = tenant(tenant);
+            Task task = new Task(owner, program, context, instructionBudget);
+            if (owner.queue.isEmpty()) {
+                owner.virtualTime = Math.max(owner.virtualTime, minVirtualTime);  // No credit for idle time
+            }
+            owner.queue.addLast(task);
+            notify();
+            return task;
+        }
+    }
+
+    public Task submit(String tenant, Program program) {
+        return submit(tenant, program, null, 0);
+    }
+
+    private Tenant tenant(String name) {
+        return tenants.computeIfAbsent(name, Tenant::new);
+    }
+
+    // Worker loop: take the next slice, run it, then requeue or complete the task
+    private void work() {
+        while (true) {
+            Task task;
+            synchronized (this) {
+                task = next();
+                while (task == null) {
+                    if (closed) {
+                        return;
+                    }
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    task = next();
+                }
+            }
+            runSlice(task);
+        }
+    }
+
+    // Removes the first task of the tenant with the smallest virtual time, or returns null
+    private Task next() {
+        if (paused) {
+            return null;
+        }
+        Tenant chosen = null;
+        for (Tenant tenant : tenants.values()) {
+            if (!tenant.queue.isEmpty() && (chosen == null || tenant.virtualTime < chosen.virtualTime)) {
+                chosen = tenant;
+            }
+        }
+        if (chosen == null) {
+            return null;
+        }
+        minVirtualTime = chosen.virtualTime;
+        return chosen.queue.pollFirst();
+    }
+
+    private void runSlice(Task task) {
+        long start = System.nanoTime();
+        int slice = quantum;
+        if (task.budget > 0) {
+            slice = (int) Math.min(slice, task.budget - task.instructions);
+        }
+        int before = task.context.getPc();
+        boolean finished;
+        RuntimeException failure = null;
+        try {
+            finished = slice > 0 && task.program.resume(task.context, slice);
+        } catch (RuntimeException e) {
+            // The task fails; the worker goes on with the next one
+            finished = false;
+            failure = e;
+        }
+        int after = finished ? task.program.getCodeLength() & ~1 : task.context.getPc();
+        int executed = failure != null ? 0 : (after - before) / 2;
+        long end = System.nanoTime();
+
+        boolean exhausted = !finished && failure == null && task.budget > 0 && task.instructions + executed >= task.budget;
+        boolean done = finished || exhausted || failure != null;
+        synchronized (task) {
+            task.queueWait += start - task.enqueued;
+            task.instructions += executed;
+            task.slices++;
+            task.enqueued = end;
+            if (done) {
+                task.finished = end;
+                task.latency = end - task.submitted;
+            }
+        }
+        synchronized (this) {
+            Tenant tenant = task.tenant;
+            tenant.virtualTime += (double) Math.max(executed, 1) / tenant.weight;
+            if (done) {
+                tenant.latencies[(int) (tenant.completed++ % LATENCY_SAMPLES)] = task.latency;
+            } else {
+                tenant.queue.addLast(task);
+                notify();
+            }
+        }
+        if (finished) {
+            task.result.complete(task.context);
+        } else if (exhausted) {
+            task.result.completeExceptionally(new BudgetExceededException(task.budget));
+        } else if (failure != null) {
+            task.result.completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * Latency percentile over the tenant's most recent completed runs
+     * @param tenant the tenant
+     * @param percentile between 0 and 100, e.g. 99
+     * @return the latency in nanoseconds, or -1 if no run has completed
+     */
+    public synchronized long getLatencyPercentile(String tenant, double percentile) {
+        Tenant owner = tenants.get(tenant);
+        if (owner == null || owner.completed == 0) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(owner.latencies, (int) Math.min(owner.completed, LATENCY_SAMPLES));
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    // Number of tasks queued for a tenant, not counting slices that are running
+    public synchronized int getQueueLength(String tenant) {
+        Tenant owner = tenants.get(tenant);
+        return owner == null ? 0 : owner.queue.size();
+    }
+
+    // Lets the queued tasks finish, then stops the workers; starts them first if they are paused
+    @Override
+    public void close() {
+        synchronized (this) {
+            paused = false;
+            closed = true;
+            notifyAll();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
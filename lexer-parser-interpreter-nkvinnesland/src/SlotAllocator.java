@@ -0,0 +1,131 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Lets variables share memory slots, much like register allocation. Every STORE starts a new
+ * value that lives until its last load; values that are never live at the same time get the
+ * same slot. The final value of each output identifier (see IdTable.markOutput) lives until the
+ * end of the program, and its slot is recorded in the IdTable. When no identifier is marked as
+ * an output, all of them are.
+ *
+ * Because the code is straight-line, handing out the lowest free slot at each STORE uses the
+ * smallest possible memory: the largest number of values live at one time.
+ */
+public class SlotAllocator {
+
+    private int memorySize = -1;
+
+    /**
+     * Rewrites the addresses in the generated code to reuse slots and shrinks the memory to match
+     * @param interpreter holds the code; its code and memory are replaced
+     * @param idTable the identifiers of the program, with the outputs marked
+     * @return the memory size the program needs now
+     */
+    public int allocate(ByteCodeInterpreter interpreter, IdTable idTable) {
+        int[] code = interpreter.getCode();
+        int addresses = interpreter.getMemorySize();
+        if (!isStraightLine(code, addresses)) {
+            memorySize = addresses;  // Not code the Parser generates; leave it alone
+            return memorySize;
+        }
+
+        // Which addresses have to keep their final value
+        boolean[] output = new boolean[addresses];
+        String[] ids = idTable.getIdentifiers();
+        for (int a = 0; a < addresses; a++) {
+            output[a] = !idTable.hasOutputs() || (a < ids.length && idTable.isOutput(ids[a]));
+        }
+
+        // First pass: number the values (one per STORE) and find the last load of each
+        int instructions = code.length / 2;
+        int[] valueOf = new int[instructions];  // Value read or written by each instruction
+        int[] lastUse = new int[instructions];  // Indexed by value, -1 when never loaded
+        int[] current = new int[addresses];
+        Arrays.fill(current, -1);
+        int values = 0;
+        for (int i = 0; i < instructions; i++) {
+            int command = code[2 * i];
+            int address = code[2 * i + 1];
+            if (command == ByteCodeInterpreter.STORE) {
+                lastUse[values] = -1;
+                current[address] = values;
+                valueOf[i] = values++;
+            } else if (readsMemory(command)) {
+                if (current[address] == -1) {
+                    memorySize = addresses;  // Loaded before it is stored; keep the original layout
+                    return memorySize;
+                }
+                valueOf[i] = current[address];
+                lastUse[current[address]] = i;
+            }
+        }
+        // The final value of an output lives to the end
+        for (int a = 0; a < addresses; a++) {
+            if (output[a] && current[a] != -1) {
+                lastUse[current[a]] = instructions;
+            }
+        }
+
+        // Second pass: hand out the lowest free slot at each STORE and free it after the last load
+        int[] slotOf = new int[values];
+        BitSet occupied = new BitSet();
+        int size = 0;
+        for (int i = 0; i < instructions; i++) {
+            int command = code[2 * i];
+            if (command == ByteCodeInterpreter.STORE) {
+                int value = valueOf[i];
+                int slot = occupied.nextClearBit(0);
+                slotOf[value] = slot;
+                size = Math.max(size, slot + 1);
+                if (lastUse[value] != -1) {
+                    occupied.set(slot);  // A value nobody loads does not keep its slot
+                }
+                code[2 * i + 1] = slot;
+            } else if (readsMemory(command)) {
+                int value = valueOf[i];
+                code[2 * i + 1] = slotOf[value];
+                if (lastUse[value] == i) {
+                    occupied.clear(slotOf[value]);
+                }
+            }
+        }
+
+        for (int a = 0; a < addresses; a++) {
+            if (output[a] && current[a] != -1 && a < ids.length) {
+                idTable.setOutputAddress(ids[a], slotOf[current[a]]);
+            }
+        }
+        interpreter.replaceCode(code, code.length);
+        interpreter.resizeMemory(size);
+        memorySize = size;
+        return size;
+    }
+
+    // Minimal memory size found by the last allocate(), -1 before that
+    public int getMemorySize() {
+        return memorySize;
+    }
+
+    private static boolean readsMemory(int command) {
+        return command == ByteCodeInterpreter.LOAD || command == ByteCodeInterpreter.SUB
+                || command == ByteCodeInterpreter.MULT || command == ByteCodeInterpreter.DIV;
+    }
+
+    // True if every command is valid and every address is inside memory
+    private static boolean isStraightLine(int[] code, int addresses) {
+        if (code.length % 2 != 0) {
+            return false;
+        }
+        for (int pc = 0; pc < code.length; pc += 2) {
+            int command = code[pc];
+            if (command < ByteCodeInterpreter.LOAD || command > ByteCodeInterpreter.POPDIV) {
+                return false;
+            }
+            if ((command == ByteCodeInterpreter.STORE || readsMemory(command))
+                    && (code[pc + 1] < 0 || code[pc + 1] >= addresses)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,135 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Compact token storage. The kind, start offset, length, line and value of every token
+ * are kept in parallel int arrays instead of one Token object per token, and lexemes are only read
+ * back from the Lexer's buffer when somebody asks for them.
+ * @see Lexer#tokenize()
+ */
+public class TokenBuffer {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private Lexer source;  // Lexer whose buffer the offsets point into
+    private int[] kinds;
+    private int[] starts;
+    private int[] lengths;
+    private int[] lines;
+    private int[] values;  // Lexer.tokenValue: identifier hash for IdTable lookups, or integer value
+    private int size = 0;
+
+    public TokenBuffer(Lexer source) {
+        this(source, INITIAL_CAPACITY);
+    }
+
+    public TokenBuffer(Lexer source, int capacity) {
+        this.source = source;
+        capacity = Math.max(capacity, 1);
+        this.kinds = new int[capacity];
+        this.starts = new int[capacity];
+        this.lengths = new int[capacity];
+        this.lines = new int[capacity];
+        this.values = new int[capacity];
+    }
+
+    // Appends one token, growing the arrays when they are full
+    public void add(int kind, int start, int length, int line, int value) {
+        if (size == kinds.length) {
+            grow(size * 2);
+        }
+        kinds[size] = kind;
+        starts[size] = start;
+        lengths[size] = length;
+        lines[size] = line;
+        values[size] = value;
+        size++;
+    }
+
+    // Appends a token without a value, e.g. EOF
+    public void add(int kind, int start, int length, int line) {
+        add(kind, start, length, line, 0);
+    }
+
+    // Appends every token of part, e.g. one chunk of Lexer.tokenizeParallel, shifting its lines by lineOffset
+    public void append(TokenBuffer part, int lineOffset) {
+        append(part, 0, part.size, 0, lineOffset);
+    }
+
+    // Appends tokens [from, to) of part, shifting their start offsets by startOffset and their lines by lineOffset
+    public void append(TokenBuffer part, int from, int to, int startOffset, int lineOffset) {
+        int count = to - from;
+        if (size + count > kinds.length) {
+            grow(Math.max(size + count, size * 2));
+        }
+        System.arraycopy(part.kinds, from, kinds, size, count);
+        System.arraycopy(part.lengths, from, lengths, size, count);
+        System.arraycopy(part.values, from, values, size, count);
+        for (int i = 0; i < count; i++) {
+            starts[size + i] = part.starts[from + i] + startOffset;
+            lines[size + i] = part.lines[from + i] + lineOffset;
+        }
+        size += count;
+    }
+
+    private void grow(int capacity) {
+        kinds = Arrays.copyOf(kinds, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+        values = Arrays.copyOf(values, capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getKind(int i) {
+        return kinds[i];
+    }
+
+    public int getStart(int i) {
+        return starts[i];
+    }
+
+    public int getLength(int i) {
+        return lengths[i];
+    }
+
+    public int getLineNumber(int i) {
+        return lines[i];
+    }
+
+    // Value of token i as the Lexer computed it, see Lexer.tokenValue
+    public int getValue(int i) {
+        return values[i];
+    }
+
+    public Lexer getSource() {
+        return source;
+    }
+
+    // Reads the text of token i back from the source buffer
+    public String getLexeme(int i) {
+        return source.lexeme(starts[i], lengths[i]);
+    }
+
+    // Token view of token i
+    public Token getToken(int i) {
+        return source.toToken(kinds[i], starts[i], lengths[i], lines[i]);
+    }
+
+    // Token views of every token, the same list Lexer.getAllTokens() returns
+    public ArrayList<Token> toTokens() {
+        ArrayList<Token> tokens = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            tokens.add(getToken(i));
+        }
+        return tokens;
+    }
+
+    @Override
+    public String toString() {
+        return toTokens().toString();
+    }
+}
@@ -0,0 +1,72 @@
+import java.util.Objects;
+
+/**
+ * One problem BytecodeVerifier found in a program, at the code index of the offending command.
+ * Its kind is the Diagnostic.Kind of the run-time error the command would report: INVALID_COMMAND,
+ * MISSING_OPERAND, ADDRESS_OUT_OF_BOUNDS or EMPTY_STACK.
+ * @see BytecodeVerifier
+ */
+public class VerificationError {
+
+    private final Diagnostic.Kind kind;
+    private final int index;
+    private final int command;
+    private final int operand;
+
+    public VerificationError(Diagnostic.Kind kind, int index, int command, int operand) {
+        this.kind = kind;
+        this.index = index;
+        this.command = command;
+        this.operand = operand;
+    }
+
+    public Diagnostic.Kind getKind() {
+        return kind;
+    }
+
+    // Index of the command in the code segment
+    public int getIndex() {
+        return index;
+    }
+
+    public int getCommand() {
+        return command;
+    }
+
+    public int getOperand() {
+        return operand;
+    }
+
+    public String getMessage() {
+        switch (kind) {
+            case INVALID_COMMAND:
+                return "Invalid command " + command + " at index " + index;
+            case MISSING_OPERAND:
+                return "Missing operand for command at index " + index;
+            case ADDRESS_OUT_OF_BOUNDS:
+                return "Address " + operand + " out of bounds at index " + index;
+            case EMPTY_STACK:
+                return "Operand stack is empty at index " + index;
+            default:
+                throw new IllegalStateException("Not a verification error: " + kind);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getMessage();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        VerificationError that = (VerificationError) o;
+        return kind == that.kind && index == that.index && command == that.command && operand == that.operand;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, index, command, operand);
+    }
+}
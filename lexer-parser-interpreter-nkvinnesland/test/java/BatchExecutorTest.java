@@ -0,0 +1,80 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+public class BatchExecutorTest {
+
+    private static final String PROGRAM = "t = x * 3 - y\nr = (t + 7) / y\nq = 5\ns = r * x + q\n";
+
+    @Test
+    public void testRowsMatchTheInterpreter() throws IOException {
+        Path file = Files.createTempFile("batch", ".txt");
+        Files.write(file, PROGRAM.getBytes());
+        int rows = 3 * BatchExecutor.BLOCK_SIZE + 17;
+        Random random = new Random(5);
+        int[] x = new int[rows];
+        int[] y = new int[rows];
+        for (int r = 0; r < rows; r++) {
+            x[r] = random.nextInt(2001) - 1000;
+            y[r] = random.nextInt(21) - 10;  // Includes divisions by zero
+        }
+
+        Parser parser = parse(file);
+        parser.getIdTable().markOutput("s");
+        parser.getIdTable().markOutput("r");
+        new BytecodeOptimizer().optimize(parser.getByteCodeInterpreter());  // Inputs must not be folded
+        BatchExecutor executor = new BatchExecutor(parser.getByteCodeInterpreter(), parser.getIdTable());
+        executor.bind("x", x);
+        executor.bind("y", y);
+        executor.execute(rows);
+
+        for (int r = 0; r < rows; r += 37) {
+            // The same row in the interpreter: store the inputs, then run the unoptimized program
+            Parser row = parse(file);
+            ByteCodeInterpreter interpreter = row.getByteCodeInterpreter();
+            int[] program = interpreter.getCode();
+            int[] code = new int[8 + program.length];
+            code[0] = ByteCodeInterpreter.LOADI;
+            code[1] = x[r];
+            code[2] = ByteCodeInterpreter.STORE;
+            code[3] = row.getIdTable().getAddress("x");
+            code[4] = ByteCodeInterpreter.LOADI;
+            code[5] = y[r];
+            code[6] = ByteCodeInterpreter.STORE;
+            code[7] = row.getIdTable().getAddress("y");
+            System.arraycopy(program, 0, code, 8, program.length);
+            interpreter.replaceCode(code, code.length);
+            interpreter.run();
+
+            Assert.assertEquals(row.getIdTable().getValue("s", interpreter), executor.getColumn("s")[r]);
+            Assert.assertEquals(row.getIdTable().getValue("r", interpreter), executor.getColumn("r")[r]);
+        }
+    }
+
+    @Test
+    public void testUnboundInputIsRejected() throws IOException {
+        Path file = Files.createTempFile("batch", ".txt");
+        Files.write(file, PROGRAM.getBytes());
+        Parser parser = parse(file);
+        BatchExecutor executor = new BatchExecutor(parser.getByteCodeInterpreter(), parser.getIdTable());
+        executor.bind("x", new int[4]);
+        try {
+            executor.execute(4);
+            Assert.fail("Expected the unbound input y to be reported");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("Input 'y' is not bound", e.getMessage());
+        }
+    }
+
+    private static Parser parse(Path file) {
+        Parser parser = new Parser(new Lexer(file.toString()));
+        parser.getIdTable().declareInput("x");
+        parser.getIdTable().declareInput("y");
+        Assert.assertTrue(parser.parseProgram());
+        return parser;
+    }
+}
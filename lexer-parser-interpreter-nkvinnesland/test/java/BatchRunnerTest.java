@@ -0,0 +1,129 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class BatchRunnerTest {
+
+    @Test
+    public void testDirectoryGivesOneLinePerScript() throws IOException {
+        Path directory = Files.createTempDirectory("batch-runner");
+        try {
+            Files.write(directory.resolve("a.txt"), "a = 4\nb = a - 4\nc = a / b\n".getBytes());
+            Files.write(directory.resolve("b.txt"), "x = 1\n\nx = y + 1\n".getBytes());
+            Files.write(directory.resolve("c.txt"), "z = 99999999999\n".getBytes());
+            Files.write(directory.resolve("notes.md"), "not a script".getBytes());
+            List<Path> scripts = BatchRunner.listScripts(directory);
+            Assert.assertEquals(3, scripts.size());
+
+            String[] lines = run(scripts);
+            Assert.assertEquals(3, lines.length);
+            Assert.assertTrue(lines[0], lines[0].matches("\\{\"script\":\".*a\\.txt\",\"valid\":true,\"diagnostics\":\\["
+                    + "\\{\"kind\":\"DIVISION_BY_ZERO\",\"line\":3,\"identifier\":\"b\",\"message\":\"Run-time error: Division by zero\"}],"
+                    + "\"memory\":\\{\"a\":4,\"b\":0,\"c\":4},\"nanos\":\\d+}"));
+            Assert.assertTrue(lines[1], lines[1].matches("\\{\"script\":\".*b\\.txt\",\"valid\":false,\"diagnostics\":\\["
+                    + "\\{\"kind\":\"UNDEFINED_IDENTIFIER\",\"line\":3,\"identifier\":\"y\","
+                    + "\"message\":\"Error: Identifier 'y' is not defined, line 3\"}],\"nanos\":\\d+}"));
+            Assert.assertTrue(lines[2], lines[2].contains("\"valid\":false,\"diagnostics\":[{\"kind\":\"INVALID_INTEGER\""));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testManifestAndCounts() throws IOException {
+        Path directory = Files.createTempDirectory("batch-runner");
+        try {
+            for (int i = 0; i < 100; i++) {
+                String source = i % 10 == 0 ? "a = (1 + \n" : "a = " + i + "\nb = a * 2 / (a - 50)\n";
+                Files.write(directory.resolve("s" + i + ".txt"), source.getBytes());
+            }
+            StringBuilder manifest = new StringBuilder("# every script\n\n");
+            for (int i = 0; i < 100; i++) {
+                manifest.append("s").append(i).append(".txt\n");
+            }
+            Path manifestFile = directory.resolve("manifest");
+            Files.write(manifestFile, manifest.toString().getBytes());
+
+            List<Path> scripts = BatchRunner.listScripts(manifestFile);
+            Assert.assertEquals(100, scripts.size());
+            try (BatchRunner runner = new BatchRunner(4)) {
+                StringWriter out = new StringWriter();
+                runner.run(scripts, out);
+                Assert.assertEquals(100, out.toString().split("\n").length);
+                Assert.assertEquals(90, runner.getValidCount());
+                Assert.assertEquals(10, runner.getInvalidCount());
+                Assert.assertEquals(0, runner.getRunTimeErrorCount());  // s50 is invalid, so a - 50 is never 0
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testParserDiagnostics() {
+        Parser parser = new Parser(Lexer.fromSource("a = 1\nb = (a +\n2\n"));
+        parser.setQuiet(true);
+        Assert.assertFalse(parser.parseProgram());
+        Assert.assertEquals(Arrays.asList(new Diagnostic(Diagnostic.Kind.EXPECTING_CLOSING_PARENTHESIS, 4, null,
+                "Error: Expecting closing parenthesis, line 4")), parser.getDiagnostics());
+    }
+
+    @Test
+    public void testIntegerOutOfRangeDiagnostic() {
+        Parser parser = new Parser(Lexer.fromSource("a = 1\nb = 99999999999\n"));
+        parser.setQuiet(true);
+        Assert.assertFalse(parser.parseProgram());
+        Assert.assertEquals(Arrays.asList(new Diagnostic(Diagnostic.Kind.INVALID_INTEGER, 2, null,
+                "Error: Integer 99999999999 out of range, line 2")), parser.getDiagnostics());
+    }
+
+    @Test
+    public void testDivisionByZeroNamesTheDivisor() {
+        Parser parser = new Parser(Lexer.fromSource("a = 0\nb = 1 / a\n"), 8);  // More memory than identifiers
+        Assert.assertTrue(parser.parseProgram());
+        Assert.assertEquals("a", divisionByZero(Program.of(parser.getByteCodeInterpreter(), parser.getIdTable())));
+
+        // An address past the identifiers, and slots shared by a and b, name no identifier
+        int[] code = {ByteCodeInterpreter.LOADI, 1, ByteCodeInterpreter.DIV, 5, ByteCodeInterpreter.STORE, 0};
+        Assert.assertNull(divisionByZero(new Program(code, new String[]{"a"}, 8)));
+        code = new int[]{ByteCodeInterpreter.LOADI, 1, ByteCodeInterpreter.DIV, 0, ByteCodeInterpreter.STORE, 0};
+        Assert.assertNull(divisionByZero(new Program(code, new String[]{"a", "b"}, 1)));
+    }
+
+    // Runs the program quietly and returns the identifier of its one division by zero
+    private static String divisionByZero(Program program) {
+        ExecutionContext context = program.newContext();
+        context.setQuiet(true);
+        program.execute(context);
+        Assert.assertEquals(1, context.getDiagnostics().size());
+        Assert.assertEquals(Diagnostic.Kind.DIVISION_BY_ZERO, context.getDiagnostics().get(0).getKind());
+        return context.getDiagnostics().get(0).getIdentifier();
+    }
+
+    // Runs the scripts and returns the output lines sorted by script
+    private static String[] run(List<Path> scripts) {
+        try (BatchRunner runner = new BatchRunner(2)) {
+            StringWriter out = new StringWriter();
+            runner.run(scripts, out);
+            String[] lines = out.toString().split("\n");
+            Arrays.sort(lines);
+            return lines;
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class ByteCodeInterpreterTest {
+
+    @Test
+    public void testRunStraightLineProgram(){
+        ByteCodeInterpreter interpreter = new ByteCodeInterpreter(2);
+        interpreter.generate(ByteCodeInterpreter.LOADI, 33);
+        interpreter.generate(ByteCodeInterpreter.STORE, 0);
+        interpreter.generate(ByteCodeInterpreter.LOADI, 99);
+        interpreter.generate(ByteCodeInterpreter.LOAD, 0);
+        interpreter.generate(ByteCodeInterpreter.STORE, 1);
+        interpreter.run();
+
+        Assert.assertEquals(Arrays.asList(1, 33, 2, 0, 1, 99, 0, 0, 2, 1), interpreter.getBytecode());
+        Assert.assertEquals(Arrays.asList(33, 132), interpreter.getMemory());
+        Assert.assertEquals(0, interpreter.getAccumulator());
+    }
+
+    @Test
+    public void testCodeSegmentGrows(){
+        ByteCodeInterpreter interpreter = new ByteCodeInterpreter(1);
+        for (int i = 0; i < 1000; i++) {
+            interpreter.generate(ByteCodeInterpreter.LOADI, 1);
+        }
+        interpreter.generate(ByteCodeInterpreter.STORE, 0);
+        interpreter.run();
+
+        Assert.assertEquals(2002, interpreter.getCodeLength());
+        Assert.assertEquals(1000, interpreter.getMemoryValue(0));
+    }
+
+    @Test
+    public void testMemorySizedFromIdTable(){
+        Parser parser = new Parser(new Lexer("testMultiplePlus.txt"));
+        Assert.assertTrue(parser.parseProgram());
+        parser.runProgram();
+
+        ByteCodeInterpreter interpreter = parser.getByteCodeInterpreter();
+        Assert.assertEquals(parser.getIdTable().size(), interpreter.getMemorySize());
+        Assert.assertEquals(Arrays.asList(77, 163), interpreter.getMemory());
+    }
+
+    @Test
+    public void testArithmeticPrecedence(){
+        Parser parser = new Parser(new Lexer("testPrecedence.txt"));
+        Assert.assertTrue(parser.parseProgram());
+        parser.runProgram();
+
+        // a b c d e f g h, see testPrecedence.txt
+        Assert.assertEquals(Arrays.asList(7, 1, 15, 136, 15, 4, -3, 7), parser.getByteCodeInterpreter().getMemory());
+    }
+
+    @Test
+    public void testPlusOnlyBytecodeUnchanged(){
+        Parser parser = new Parser(new Lexer("test.txt"), 10);
+        Assert.assertTrue(parser.parseProgram());
+        Assert.assertEquals(Arrays.asList(1, 33, 2, 0, 1, 99, 1, 88, 0, 0, 2, 1), parser.getByteCodeInterpreter().getBytecode());
+    }
+
+    @Test
+    public void testSubexpressionUsesOperandStack(){
+        ByteCodeInterpreter interpreter = new ByteCodeInterpreter(1);
+        // 10 - 2 * 3
+        interpreter.generate(ByteCodeInterpreter.LOADI, 10);
+        interpreter.generate(ByteCodeInterpreter.PUSH, 0);
+        interpreter.generate(ByteCodeInterpreter.LOADI, 2);
+        interpreter.generate(ByteCodeInterpreter.MULTI, 3);
+        interpreter.generate(ByteCodeInterpreter.POPSUB, 0);
+        interpreter.generate(ByteCodeInterpreter.STORE, 0);
+        interpreter.run();
+        Assert.assertEquals(4, interpreter.getMemoryValue(0));
+    }
+
+    @Test
+    public void testDivisionByZeroKeepsLeftOperand(){
+        ByteCodeInterpreter interpreter = new ByteCodeInterpreter(1);
+        interpreter.generate(ByteCodeInterpreter.LOADI, 9);
+        interpreter.generate(ByteCodeInterpreter.DIVI, 0);
+        interpreter.generate(ByteCodeInterpreter.STORE, 0);
+        interpreter.run();
+        Assert.assertEquals(9, interpreter.getMemoryValue(0));
+    }
+
+    @Test
+    public void testSuperinstructions(){
+        for (boolean closures : new boolean[]{false, true}) {
+            // a = 5, b = a + 7, c = a * 2, then a store to an address outside memory
+            ByteCodeInterpreter interpreter = new ByteCodeInterpreter(3);
+            interpreter.generate(ByteCodeInterpreter.LOADI, 5);
+            interpreter.generate(ByteCodeInterpreter.STORE, 0);
+            interpreter.generate(ByteCodeInterpreter.LOAD, 0);
+            interpreter.generate(ByteCodeInterpreter.LOADI, 7);
+            interpreter.generate(ByteCodeInterpreter.STORE, 1);
+            interpreter.generate(ByteCodeInterpreter.LOAD, 0);
+            interpreter.generate(ByteCodeInterpreter.MULTI, 2);
+            interpreter.generate(ByteCodeInterpreter.STORE, 2);
+            interpreter.generate(ByteCodeInterpreter.LOADI, 1);
+            interpreter.generate(ByteCodeInterpreter.STORE, 9);  // Not fused, so the error is still reported
+            interpreter.setClosureDispatch(closures);
+
+            // Two fused statements, LOAD MULTI STORE and the unfused LOADI STORE
+            Assert.assertEquals(7, interpreter.getDecodedInstructionCount());
+            interpreter.run();
+            Assert.assertEquals(Arrays.asList(5, 12, 10), interpreter.getMemory());
+            Assert.assertEquals(1, interpreter.getAccumulator());
+            interpreter.run();  // The failed STORE left 1 in the accumulator
+            Assert.assertEquals(Arrays.asList(6, 13, 12), interpreter.getMemory());
+        }
+    }
+}
@@ -0,0 +1,141 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class BytecodeOptimizerTest {
+
+    @Test
+    public void testFoldsAndPropagatesConstants(){
+        // a = 1 + 2, b = a + 3
+        ByteCodeInterpreter interpreter = new ByteCodeInterpreter(2);
+        interpreter.generate(ByteCodeInterpreter.LOADI, 1);
+        interpreter.generate(ByteCodeInterpreter.LOADI, 2);
+        interpreter.generate(ByteCodeInterpreter.STORE, 0);
+        interpreter.generate(ByteCodeInterpreter.LOAD, 0);
+        interpreter.generate(ByteCodeInterpreter.LOADI, 3);
+        interpreter.generate(ByteCodeInterpreter.STORE, 1);
+
+        BytecodeOptimizer optimizer = new BytecodeOptimizer();
+        Assert.assertEquals(2, optimizer.foldConstants(interpreter));
+        Assert.assertEquals(Arrays.asList(1, 3, 2, 0, 1, 6, 2, 1), interpreter.getBytecode());
+
+        interpreter.run();
+        Assert.assertEquals(Arrays.asList(3, 6), interpreter.getMemory());
+    }
+
+    @Test
+    public void testDivisionByZeroIsNotFolded(){
+        ByteCodeInterpreter interpreter = new ByteCodeInterpreter(1);
+        interpreter.generate(ByteCodeInterpreter.LOADI, 8);
+        interpreter.generate(ByteCodeInterpreter.DIVI, 0);
+        interpreter.generate(ByteCodeInterpreter.STORE, 0);
+
+        Assert.assertEquals(0, new BytecodeOptimizer().foldConstants(interpreter));
+        Assert.assertEquals(Arrays.asList(1, 8, 8, 0, 2, 0), interpreter.getBytecode());
+    }
+
+    @Test
+    public void testGeneratedProgramsKeepTheirResult() throws IOException {
+        for (long seed = 1; seed <= 20; seed++) {
+            Path file = Files.createTempFile("optimizer", ".txt");
+            new ProgramGenerator(seed, 200, 12, 5, "+-*/").writeTo(file);
+
+            Parser plain = new Parser(new Lexer(file.toString()));
+            Assert.assertTrue(plain.parseProgram());
+            plain.runProgram();
+
+            Parser optimized = new Parser(new Lexer(file.toString()));
+            Assert.assertTrue(optimized.parseProgram());
+            new BytecodeOptimizer().foldConstants(optimized.getByteCodeInterpreter());
+            // Every statement is constant: one LOADI and one STORE each
+            Assert.assertEquals(200 * 4, optimized.getByteCodeInterpreter().getCodeLength());
+            optimized.runProgram();
+
+            Assert.assertEquals(plain.getByteCodeInterpreter().getMemory(), optimized.getByteCodeInterpreter().getMemory());
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testRemovesOverwrittenStores(){
+        // x = 1, x = 2, y = x + 1, x = 3 + y, y = 4
+        ByteCodeInterpreter interpreter = new ByteCodeInterpreter(2);
+        interpreter.generate(ByteCodeInterpreter.LOADI, 1);
+        interpreter.generate(ByteCodeInterpreter.STORE, 0);
+        interpreter.generate(ByteCodeInterpreter.LOADI, 2);
+        interpreter.generate(ByteCodeInterpreter.STORE, 0);
+        interpreter.generate(ByteCodeInterpreter.LOAD, 0);
+        interpreter.generate(ByteCodeInterpreter.LOADI, 1);
+        interpreter.generate(ByteCodeInterpreter.STORE, 1);
+        interpreter.generate(ByteCodeInterpreter.LOADI, 3);
+        interpreter.generate(ByteCodeInterpreter.LOAD, 1);
+        interpreter.generate(ByteCodeInterpreter.STORE, 0);
+        interpreter.generate(ByteCodeInterpreter.LOADI, 4);
+        interpreter.generate(ByteCodeInterpreter.STORE, 1);
+
+        Assert.assertEquals(2, new BytecodeOptimizer().eliminateDeadStores(interpreter));
+        Assert.assertEquals(Arrays.asList(1, 2, 2, 0, 0, 0, 1, 1, 2, 1, 1, 3, 0, 1, 2, 0, 1, 4, 2, 1),
+                interpreter.getBytecode());
+        interpreter.run();
+        Assert.assertEquals(Arrays.asList(6, 4), interpreter.getMemory());
+    }
+
+    @Test
+    public void testPeepholeMergesImmediates(){
+        ByteCodeInterpreter interpreter = new ByteCodeInterpreter(1);
+        interpreter.generate(ByteCodeInterpreter.LOAD, 0);
+        interpreter.generate(ByteCodeInterpreter.LOADI, 2);
+        interpreter.generate(ByteCodeInterpreter.LOADI, 3);
+        interpreter.generate(ByteCodeInterpreter.SUBI, 1);
+        interpreter.generate(ByteCodeInterpreter.MULTI, 2);
+        interpreter.generate(ByteCodeInterpreter.MULTI, 5);
+        interpreter.generate(ByteCodeInterpreter.DIVI, 1);
+        interpreter.generate(ByteCodeInterpreter.STORE, 0);
+
+        Assert.assertEquals(4, new BytecodeOptimizer().peephole(interpreter));
+        Assert.assertEquals(Arrays.asList(0, 0, 1, 4, 6, 10, 2, 0), interpreter.getBytecode());
+    }
+
+    @Test
+    public void testPeepholeCanBeDisabled(){
+        ByteCodeInterpreter interpreter = new ByteCodeInterpreter(1);
+        interpreter.generate(ByteCodeInterpreter.LOADI, 1);
+        interpreter.generate(ByteCodeInterpreter.STORE, 0);
+        interpreter.generate(ByteCodeInterpreter.LOADI, 2);
+        interpreter.generate(ByteCodeInterpreter.STORE, 0);
+
+        BytecodeOptimizer optimizer = new BytecodeOptimizer();
+        optimizer.setPeepholeEnabled(false);
+        Assert.assertEquals(0, optimizer.optimize(interpreter));
+        optimizer.setPeepholeEnabled(true);
+        Assert.assertEquals(2, optimizer.optimize(interpreter));
+        Assert.assertEquals(Arrays.asList(1, 2, 2, 0), interpreter.getBytecode());
+    }
+
+    @Test
+    public void testOptimizedProgramsLeaveTheSameMemory() throws IOException {
+        for (long seed = 1; seed <= 20; seed++) {
+            Path file = Files.createTempFile("optimizer", ".txt");
+            new ProgramGenerator(seed, 300, 4, 4, "+-*/").writeTo(file);
+
+            Parser plain = new Parser(new Lexer(file.toString()));
+            Assert.assertTrue(plain.parseProgram());
+            plain.runProgram();
+
+            Parser optimized = new Parser(new Lexer(file.toString()));
+            Assert.assertTrue(optimized.parseProgram());
+            BytecodeOptimizer optimizer = new BytecodeOptimizer();
+            optimizer.optimize(optimized.getByteCodeInterpreter());
+            // Only the last store to each of the 4 variables survives, as LOADI + STORE or just STORE for 0
+            Assert.assertTrue(optimizer.getInstructionsAfter() <= 8);
+            optimized.runProgram();
+
+            Assert.assertEquals(plain.getByteCodeInterpreter().getMemory(), optimized.getByteCodeInterpreter().getMemory());
+            Files.delete(file);
+        }
+    }
+}
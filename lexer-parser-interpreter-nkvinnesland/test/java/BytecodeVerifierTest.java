@@ -0,0 +1,59 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class BytecodeVerifierTest {
+
+    @Test
+    public void testParsedProgramIsVerified(){
+        Parser parser = new Parser(new Lexer("testPrecedence.txt"));
+        Assert.assertTrue(parser.parseProgram());
+        ByteCodeInterpreter interpreter = parser.getByteCodeInterpreter();
+
+        Assert.assertTrue(interpreter.verify().isEmpty());
+        interpreter.runVerified();
+        Assert.assertEquals(Arrays.asList(7, 1, 15, 136, 15, 4, -3, 7), interpreter.getMemory());
+    }
+
+    @Test
+    public void testErrorsAreReported(){
+        int[] code = {
+                ByteCodeInterpreter.LOADI, 1,
+                ByteCodeInterpreter.STORE, 5,
+                ByteCodeInterpreter.POPADD, 0,
+                42, 0,
+                ByteCodeInterpreter.LOAD
+        };
+        List<VerificationError> errors = BytecodeVerifier.verify(code, code.length, 2);
+
+        Assert.assertEquals(Arrays.asList(
+                new VerificationError(Diagnostic.Kind.ADDRESS_OUT_OF_BOUNDS, 2, ByteCodeInterpreter.STORE, 5),
+                new VerificationError(Diagnostic.Kind.EMPTY_STACK, 4, ByteCodeInterpreter.POPADD, 0),
+                new VerificationError(Diagnostic.Kind.INVALID_COMMAND, 6, 42, 0),
+                new VerificationError(Diagnostic.Kind.MISSING_OPERAND, 8, ByteCodeInterpreter.LOAD, 0)
+        ), errors);
+        Assert.assertEquals("Address 5 out of bounds at index 2", errors.get(0).getMessage());
+    }
+
+    @Test
+    public void testUnverifiedProgramIsRejected(){
+        ByteCodeInterpreter interpreter = new ByteCodeInterpreter(1);
+        interpreter.generate(ByteCodeInterpreter.LOADI, 3);
+        interpreter.generate(ByteCodeInterpreter.STORE, 1);
+        try {
+            interpreter.runVerified();
+            Assert.fail("Expected a VerificationException");
+        } catch (BytecodeVerifier.VerificationException e) {
+            Assert.assertEquals(1, e.getErrors().size());
+            Assert.assertEquals(Diagnostic.Kind.ADDRESS_OUT_OF_BOUNDS, e.getErrors().get(0).getKind());
+        }
+        Assert.assertEquals(0, interpreter.getAccumulator());  // Nothing ran
+
+        // The memory grows to fit, so the same code now verifies
+        interpreter.resizeMemory(2);
+        interpreter.runVerified();
+        Assert.assertEquals(3, interpreter.getMemoryValue(1));
+    }
+}
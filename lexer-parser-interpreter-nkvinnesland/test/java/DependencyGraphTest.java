@@ -0,0 +1,104 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+public class DependencyGraphTest {
+
+    @Test
+    public void testIndependentGroupsMatchSequentialRun() {
+        // 8 chains of statements that never share a variable
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 4000; i++) {
+            int chain = i % 8;
+            source.append("a").append(chain).append(" = a").append(chain).append(" * 3 + (b").append(chain)
+                    .append(" - ").append(i).append(") / 7\n");
+            source.append("b").append(chain).append(" = b").append(chain).append(" + a").append(chain).append("\n");
+        }
+        Program program = Program.compile(source.toString(), "a0", "a1", "a2", "a3", "a4", "a5", "a6", "a7",
+                "b0", "b1", "b2", "b3", "b4", "b5", "b6", "b7");
+        ByteCodeInterpreter sequential = program.newInterpreter();
+        ByteCodeInterpreter parallel = program.newInterpreter();
+
+        DependencyGraph graph = parallel.getDependencyGraph();
+        Assert.assertNotNull(graph);
+        Assert.assertEquals(8, graph.getComponentCount());
+        Assert.assertEquals(8.0, graph.getParallelism(), 0.01);
+        for (int run = 0; run < 3; run++) {
+            sequential.run();
+            parallel.runParallel();
+            Assert.assertEquals(sequential.getMemory(), parallel.getMemory());
+            Assert.assertEquals(sequential.getAccumulator(), parallel.getAccumulator());
+        }
+    }
+
+    @Test
+    public void testSharedReadOnlyInputDoesNotJoinGroups() {
+        // 8 chains that all read k, which no statement assigns
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 4000; i++) {
+            int chain = i % 8;
+            source.append("a").append(chain).append(" = a").append(chain).append(" * 3 + k - ").append(i).append("\n");
+        }
+        Program program = Program.compile(source.toString(), "k", "a0", "a1", "a2", "a3", "a4", "a5", "a6", "a7");
+        ByteCodeInterpreter sequential = program.newInterpreter();
+        ByteCodeInterpreter parallel = program.newInterpreter();
+
+        DependencyGraph graph = parallel.getDependencyGraph();
+        Assert.assertNotNull(graph);
+        Assert.assertEquals(8, graph.getComponentCount());
+        Assert.assertTrue(graph.getTaskCount() > 1);
+        sequential.run();
+        parallel.runParallel();
+        Assert.assertEquals(sequential.getMemory(), parallel.getMemory());
+
+        // Once a statement writes k, the reads before it have to stay in order with it
+        source.append("k = 0\n");
+        program = Program.compile(source.toString(), "k", "a0", "a1", "a2", "a3", "a4", "a5", "a6", "a7");
+        Assert.assertNull(program.newInterpreter().getDependencyGraph());
+    }
+
+    @Test
+    public void testChainFallsBackToSequential() {
+        StringBuilder source = new StringBuilder("a = 1\n");
+        for (int i = 0; i < 10000; i++) {
+            source.append("a = a + ").append(i).append("\n");
+        }
+        ByteCodeInterpreter interpreter = Program.compile(source.toString()).newInterpreter();
+        Assert.assertNull(interpreter.getDependencyGraph());
+        interpreter.runParallel();
+        Assert.assertEquals(49995001, interpreter.getMemoryValue(0));
+    }
+
+    @Test
+    public void testDivisionByZeroIsReportedInOrder() {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 4000; i++) {
+            source.append("x").append(i % 4).append(" = ").append(i).append(" / y").append(i % 4)
+                    .append(" + x").append(i % 4).append("\n");
+        }
+        Program program = Program.compile(source.toString(), "y0", "y1", "y2", "y3");
+        ByteCodeInterpreter sequential = program.newInterpreter();
+        ByteCodeInterpreter parallel = program.newInterpreter();
+        Assert.assertNotNull(parallel.getDependencyGraph());
+
+        String expected = capture(sequential::run);
+        String output = capture(parallel::runParallel);
+        Assert.assertEquals(expected, output);
+        Assert.assertTrue(output.startsWith("Run-time error: Division by zero"));
+        Assert.assertEquals(sequential.getMemory(), parallel.getMemory());
+    }
+
+    private static String capture(Runnable run) {
+        PrintStream out = System.out;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes));
+        try {
+            run.run();
+        } finally {
+            System.setOut(out);
+        }
+        return bytes.toString();
+    }
+}
@@ -0,0 +1,103 @@
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+
+public class ExecutionRecorderTest {
+
+    @Test
+    public void testKeepsLastRecordsInOrder() {
+        ExecutionRecorder recorder = new ExecutionRecorder(3);
+        for (int i = 0; i < 5; i++) {
+            recorder.record(2 * i, ByteCodeInterpreter.LOADI, i, 10 * i);
+        }
+        Assert.assertEquals(3, recorder.size());
+        Assert.assertEquals(5, recorder.getRecordedCount());
+        Assert.assertEquals(4, recorder.getPc(0));
+        Assert.assertEquals(8, recorder.getPc(2));
+        Assert.assertEquals(4, recorder.getOperand(2));
+        Assert.assertEquals(40, recorder.getAccumulator(2));
+        Assert.assertEquals("Flight recorder: last 3 of 5 instructions\n"
+                + "pc 4, line ?: LOADI 2, accumulator 20\n"
+                + "pc 6, line ?: LOADI 3, accumulator 30\n"
+                + "pc 8, line ?: LOADI 4, accumulator 40", recorder.dump(null));
+    }
+
+    @Test
+    public void testRunTimeErrorDumpsWithLines() {
+        Parser parser = parse("a = 4\nb = a - 4\n\nc = a /\n  b\nd = 1\n");
+        ByteCodeInterpreter interpreter = parser.getByteCodeInterpreter();
+        interpreter.setRecorder(new ExecutionRecorder(4));
+        String output = capture(interpreter::run);
+
+        Assert.assertEquals("Run-time error: Division by zero\n"
+                + "Flight recorder: last 4 of 7 instructions\n"
+                + "pc 6, line 2: SUBI 4, accumulator 0\n"
+                + "pc 8, line 2: STORE 1, accumulator 0\n"
+                + "pc 10, line 4: LOAD 0, accumulator 4\n"
+                + "pc 12, line 5: DIV 1, accumulator 4\n", output.replace(System.lineSeparator(), "\n"));
+
+        // Same state as without a recorder
+        ByteCodeInterpreter plain = parse("a = 4\nb = a - 4\n\nc = a /\n  b\nd = 1\n").getByteCodeInterpreter();
+        capture(plain::run);
+        Assert.assertEquals(plain.getMemory(), interpreter.getMemory());
+        Assert.assertEquals(10, interpreter.getRecorder().getRecordedCount());
+        Assert.assertTrue(interpreter.dumpRecorder().endsWith("pc 18, line 6: STORE 3, accumulator 0"));
+    }
+
+    @Test
+    public void testParallelParseKeepsLines() {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 12000; i++) {
+            source.append("v").append(i % 100).append(" = ").append(i).append(i % 10 == 0 ? " +\n 1\n" : "\n");
+        }
+        Parser sequential = new Parser(Lexer.fromSource(source.toString()).tokenize(), 0);
+        Parser parallel = new Parser(Lexer.fromSource(source.toString()).tokenize(), 0);
+        capture(sequential::parseProgram);
+        capture(parallel::parseProgramParallel);
+        LineTable expected = sequential.getByteCodeInterpreter().getLineTable();
+        LineTable lines = parallel.getByteCodeInterpreter().getLineTable();
+        Assert.assertEquals(expected.size(), lines.size());
+        for (int pc = 0; pc < sequential.getByteCodeInterpreter().getCodeLength(); pc += 2) {
+            Assert.assertEquals(expected.getLine(pc), lines.getLine(pc));
+        }
+    }
+
+    @Test
+    public void testRecordingDoesNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        ExecutionRecorder recorder = new ExecutionRecorder(64);
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 1_000_000; i++) {
+            recorder.record(i, ByteCodeInterpreter.LOAD, i, i);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        // Allocating per record would take at least 16 MB; allow for the JVM's own bookkeeping
+        Assert.assertTrue("Allocated " + allocated + " bytes", allocated < 64 * 1024);
+    }
+
+    private static Parser parse(String source) {
+        Parser parser = new Parser(Lexer.fromSource(source));
+        capture(() -> Assert.assertTrue(parser.parseProgram()));
+        return parser;
+    }
+
+    private static String capture(Runnable run) {
+        PrintStream out = System.out;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes));
+        try {
+            run.run();
+        } finally {
+            System.setOut(out);
+        }
+        return bytes.toString();
+    }
+}
@@ -0,0 +1,58 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+
+public class IdTableTest {
+
+    @Test
+    public void testDenseAddressesAndRangeLookups() {
+        IdTable idTable = new IdTable();
+        for (int i = 0; i < 5000; i++) {
+            Assert.assertEquals(i, idTable.addEntry("v" + i));
+        }
+        Assert.assertEquals(42, idTable.addEntry("v42"));
+        Assert.assertEquals(5000, idTable.size());
+        Assert.assertEquals("v4999", idTable.getName(4999));
+
+        String buffer = "x = v17 + v1700 * v170x";
+        char[] chars = buffer.toCharArray();
+        Assert.assertEquals(17, idTable.getAddress(buffer, 4, 3, "v17".hashCode()));
+        Assert.assertEquals(1700, idTable.getAddress(chars, 10, 5, "v1700".hashCode()));
+        Assert.assertEquals(-1, idTable.getAddress(buffer, 18, 5, "v170x".hashCode()));
+        Assert.assertEquals(-1, idTable.getAddress(buffer, 0, 1, "x".hashCode()));
+        Assert.assertEquals(-1, idTable.getAddress("v"));
+    }
+
+    @Test
+    public void testLexerHashesLikeString() {
+        TokenBuffer tokens = Lexer.fromSource("alpha = beta1 + Gamma22 * (alpha - 3)").tokenize();
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.getKind(i) == Lexer.IDKIND) {
+                Assert.assertEquals(tokens.getLexeme(i).hashCode(), tokens.getValue(i));
+            }
+        }
+    }
+
+    @Test
+    public void testToStringEqualsAndHashCode() {
+        IdTable idTable = new IdTable();
+        HashMap<String, Integer> idMap = new HashMap<>();
+        StringBuilder expected = new StringBuilder();
+        String[] ids = {"zz12", "xyz", "a", "UNKNOWN", "count", "b2", "total"};
+        for (String id : ids) {
+            idMap.put(id, idTable.addEntry(id));
+            expected.append(id).append(": ").append(idMap.get(id)).append("\n");  // In address order
+        }
+        Assert.assertEquals("ID Table: \n" + expected, idTable.toString());
+        Assert.assertEquals(idMap.hashCode(), idTable.hashCode());
+
+        IdTable same = new IdTable();
+        for (String id : ids) {
+            same.addEntry(id);
+        }
+        Assert.assertEquals(idTable, same);
+        same.addEntry("more");
+        Assert.assertNotEquals(idTable, same);
+    }
+}
@@ -0,0 +1,79 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class IncrementalCompilerTest {
+
+    @Test
+    public void testEditsMatchFullCompile() {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            source.append("v").append(i % 40).append(" = (v").append(Math.max(i % 40 - 1, 0)).append(" + x) * ")
+                    .append(i).append("\n");
+            if (i % 9 == 0) {
+                source.append("\n  w = v").append(i % 40).append(" - 3   ");
+            }
+        }
+        IncrementalCompiler compiler = new IncrementalCompiler(source.toString(), "x");
+        assertSameAsFullCompile(compiler, "x");
+
+        String[] snippets = {"7", " + v3", "\n", "v5 = 2\n", "* (w - 1)", "q = v1\n", "v2", " ", "+", "(",
+                "\nv0 = v0 / 4", "newVar = 1\n", "$", "z = z + 1\n"};
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            String text = compiler.getSource();
+            int offset = random.nextInt(text.length() + 1);
+            int removed = random.nextInt(3) == 0 ? random.nextInt(Math.min(12, text.length() - offset) + 1) : 0;
+            compiler.edit(offset, removed, snippets[random.nextInt(snippets.length)]);
+            assertSameAsFullCompile(compiler, "x");
+        }
+    }
+
+    @Test
+    public void testSmallEditIsPatched() {
+        StringBuilder source = new StringBuilder("a = 1\n");
+        for (int i = 0; i < 20000; i++) {
+            source.append("b").append(i % 100).append(" = a * ").append(i).append("\n");
+        }
+        IncrementalCompiler compiler = new IncrementalCompiler(source.toString());
+        int offset = compiler.getSource().indexOf("= a * 10000\n") + 6;
+
+        Assert.assertTrue(compiler.edit(offset, 5, "(a + 2) / 3"));  // Replaces "10000"
+        String lines = "b3 = a\nb7 = b3 + 1\n";
+        Assert.assertTrue(compiler.edit(offset - 9, 0, lines));  // Before "b0 = a * "
+        Assert.assertEquals(1, compiler.getFullCompileCount());
+        assertSameAsFullCompile(compiler);
+
+        offset += lines.length();
+        Assert.assertFalse(compiler.edit(offset, 0, "undefined + "));
+        Assert.assertEquals("Error: Identifier 'undefined' is not defined, line 10004", compiler.getError());
+        Assert.assertTrue(compiler.edit(offset, "undefined + ".length(), ""));
+        Assert.assertEquals(3, compiler.getFullCompileCount());  // An invalid program is always compiled in full
+        Assert.assertTrue(compiler.edit(offset, 0, "b9 - "));
+        Assert.assertEquals(3, compiler.getFullCompileCount());
+        assertSameAsFullCompile(compiler);
+    }
+
+    private static void assertSameAsFullCompile(IncrementalCompiler compiler, String... inputs) {
+        Parser parser = new Parser(Lexer.fromSource(compiler.getSource()).tokenize(), 0);
+        parser.setQuiet(true);
+        for (String input : inputs) {
+            parser.getIdTable().declareInput(input);
+        }
+        boolean valid;
+        try {
+            valid = parser.parseProgram();
+        } catch (NumberFormatException e) {
+            valid = false;
+        }
+        Assert.assertEquals(compiler.getSource(), valid, compiler.isValid());
+        if (valid) {
+            Assert.assertArrayEquals(parser.getByteCodeInterpreter().getCode(), compiler.getCode());
+            Assert.assertArrayEquals(parser.getIdTable().getIdentifiers(), compiler.getIdTable().getIdentifiers());
+            Assert.assertEquals(parser.getIdTable().toString(), compiler.getIdTable().toString());
+        } else if (parser.getError() != null) {
+            Assert.assertEquals(parser.getError(), compiler.getError());
+        }
+    }
+}
@@ -0,0 +1,143 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class JitCompilerTest {
+
+    @Test
+    public void testGeneratedProgramsMatchTheInterpreter() throws IOException {
+        for (long seed = 1; seed <= 20; seed++) {
+            Path file = Files.createTempFile("jit", ".txt");
+            new ProgramGenerator(seed, 300, 15, 5, "+-*/").writeTo(file);
+
+            ByteCodeInterpreter interpreted = compile(file);
+            interpreted.setJitThreshold(-1);
+            ByteCodeInterpreter compiled = compile(file);
+            compiled.setJitThreshold(2);
+
+            // Memory carries over between runs, so every run starts from different values
+            for (int run = 0; run < 5; run++) {
+                interpreted.run();
+                compiled.run();
+                Assert.assertEquals(interpreted.getMemory(), compiled.getMemory());
+                Assert.assertEquals(interpreted.getAccumulator(), compiled.getAccumulator());
+            }
+            Assert.assertFalse(interpreted.isCompiled());
+            Assert.assertTrue(compiled.isCompiled());
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testLargeProgramIsSplitIntoMethods() throws IOException {
+        Path file = Files.createTempFile("jit", ".txt");
+        new ProgramGenerator(7, 20000, 50, 6, "+-*/").writeTo(file);
+
+        ByteCodeInterpreter interpreted = compile(file);
+        interpreted.setJitThreshold(-1);
+        interpreted.run();
+        ByteCodeInterpreter compiled = compile(file);
+        compiled.setJitThreshold(0);
+        compiled.run();
+
+        Assert.assertTrue(compiled.isCompiled());
+        Assert.assertEquals(interpreted.getMemory(), compiled.getMemory());
+        Files.delete(file);
+    }
+
+    @Test
+    public void testManyChunksAreCalledThroughGroups(){
+        // A chunk holds about 220 of these 8 to 10-byte statements, so this gives over CALLS_PER_METHOD chunks
+        int statements = 300 * JitCompiler.CALLS_PER_METHOD;
+        int[] code = new int[4 * statements];
+        for (int i = 0; i < statements; i++) {
+            code[4 * i] = ByteCodeInterpreter.LOADI;
+            code[4 * i + 1] = i % 100;
+            code[4 * i + 2] = ByteCodeInterpreter.STORE;
+            code[4 * i + 3] = i % 50;
+        }
+        JitCompiler.CompiledProgram program = JitCompiler.compile(code, code.length, 50);
+        Assert.assertNotNull(program);
+        long groups = java.util.Arrays.stream(program.getClass().getDeclaredMethods())
+                .filter(method -> method.getName().startsWith("g")).count();
+        Assert.assertTrue(groups >= 2);
+
+        int[] memory = new int[50];
+        Assert.assertEquals(0, program.run(0, memory));
+        for (int address = 0; address < 50; address++) {
+            Assert.assertEquals((statements - 50 + address) % 100, memory[address]);
+        }
+    }
+
+    @Test
+    public void testRunTimeErrorsMatchTheInterpreter(){
+        // a = 7 / 0, b = (a - 3) * (2 / c) with c = 0 on the first run, c = MIN_VALUE / -1 + 70000
+        String interpretedOutput = captureOutput(program(-1));
+        String compiledOutput = captureOutput(program(0));
+        Assert.assertTrue(interpretedOutput.contains("Run-time error: Division by zero"));
+        Assert.assertEquals(interpretedOutput, compiledOutput);
+    }
+
+    @Test
+    public void testUncompilableCodeStaysInTheInterpreter(){
+        ByteCodeInterpreter interpreter = new ByteCodeInterpreter(1);
+        interpreter.generate(ByteCodeInterpreter.LOADI, 5);
+        interpreter.generate(ByteCodeInterpreter.STORE, 3);  // Out of bounds
+        interpreter.setJitThreshold(0);
+        interpreter.run();
+        Assert.assertFalse(interpreter.isCompiled());
+
+        // Fixing the code makes it eligible again
+        interpreter.replaceCode(new int[]{ByteCodeInterpreter.LOADI, 5, ByteCodeInterpreter.STORE, 0}, 4);
+        interpreter.run();
+        Assert.assertTrue(interpreter.isCompiled());
+        Assert.assertEquals(10, interpreter.getMemoryValue(0));  // The failed STORE left 5 in the accumulator
+    }
+
+    private static ByteCodeInterpreter compile(Path file) {
+        Parser parser = new Parser(new Lexer(file.toString()));
+        Assert.assertTrue(parser.parseProgram());
+        return parser.getByteCodeInterpreter();
+    }
+
+    // A program with run-time errors, interpreted or compiled depending on jitThreshold
+    private static ByteCodeInterpreter program(int jitThreshold) {
+        ByteCodeInterpreter interpreter = new ByteCodeInterpreter(3);
+        interpreter.generate(ByteCodeInterpreter.LOADI, 7);
+        interpreter.generate(ByteCodeInterpreter.DIVI, 0);
+        interpreter.generate(ByteCodeInterpreter.STORE, 0);
+        interpreter.generate(ByteCodeInterpreter.LOAD, 0);
+        interpreter.generate(ByteCodeInterpreter.SUBI, 3);
+        interpreter.generate(ByteCodeInterpreter.PUSH, 0);
+        interpreter.generate(ByteCodeInterpreter.LOADI, 2);
+        interpreter.generate(ByteCodeInterpreter.DIV, 2);
+        interpreter.generate(ByteCodeInterpreter.POPMULT, 0);
+        interpreter.generate(ByteCodeInterpreter.STORE, 1);
+        interpreter.generate(ByteCodeInterpreter.LOADI, Integer.MIN_VALUE);
+        interpreter.generate(ByteCodeInterpreter.DIVI, -1);
+        interpreter.generate(ByteCodeInterpreter.LOADI, 70000);
+        interpreter.generate(ByteCodeInterpreter.STORE, 2);
+        interpreter.setJitThreshold(jitThreshold);
+        return interpreter;
+    }
+
+    // Runs the program three times and returns the printed errors followed by the final state
+    private static String captureOutput(ByteCodeInterpreter interpreter) {
+        PrintStream console = System.out;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(output));
+        try {
+            for (int run = 0; run < 3; run++) {
+                interpreter.run();
+            }
+        } finally {
+            System.setOut(console);
+        }
+        return output + interpreter.getMemory().toString() + interpreter.getAccumulator();
+    }
+}
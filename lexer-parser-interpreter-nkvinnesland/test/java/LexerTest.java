@@ -132,6 +132,121 @@ public class LexerTest {
             Assert.fail("The string returned by your program did not match any of strings that are considered correct representation of the list of token.");
     }
 
+    @Test
+    public void testStreamingMatchesInMemory(){
+        String[] files = {"test.txt", "testExpectingAssignOp.txt", "testExpectingIdOrInt2.txt",
+                "testMultiplePlus.txt", "testWhitespace.txt", "testInvalidCharacters.txt"};
+        for (String file : files) {
+            String expected = stringifyListOfToken(new Lexer(file).getAllTokens());
+            // A tiny chunk size forces a refill in the middle of most lexemes
+            String actual = stringifyListOfToken(new Lexer(file, true, 4).getAllTokens());
+            Assert.assertEquals("Streaming lexer differs for " + file, expected, actual);
+        }
+    }
+
+    @Test
+    public void testTokenizeMatchesGetAllTokens(){
+        String[] files = {"test.txt", "testInvalidCharacters.txt", "testWhitespace.txt"};
+        for (String file : files) {
+            String expected = stringifyListOfToken(new Lexer(file).getAllTokens());
+            TokenBuffer tokens = new Lexer(file).tokenize();
+            Assert.assertEquals("TokenBuffer view differs for " + file, expected, stringifyListOfToken(tokens.toTokens()));
+            Assert.assertEquals(Lexer.EOFKIND, tokens.getKind(tokens.size() - 1));
+        }
+    }
+
+    @Test
+    public void testTokenizeEofLineAfterBlankLines(){
+        String source = "\n\n  a = 1\nb = a\n\n";
+        String expected = stringifyListOfToken(Lexer.fromSource(source).getAllTokens());
+        Assert.assertEquals(expected, stringifyListOfToken(Lexer.fromSource(source).tokenize().toTokens()));
+        Assert.assertEquals(expected, stringifyListOfToken(Lexer.fromSource(source).getAllTokensParallel()));
+    }
+
+    @Test
+    public void testParallelMatchesSequential(){
+        StringBuilder sb = new StringBuilder("\n\n");
+        for (int i = 0; sb.length() < 8 * Lexer.MIN_PARALLEL_CHUNK; i++) {
+            sb.append("x").append(i).append(" = (x").append(i / 2).append(" + ").append(i).append(") * 3\n");
+            if (i % 97 == 0) {
+                sb.append("\n  \t\r\n$ % y").append(i).append("=4/2-1\n");
+            }
+        }
+        sb.append("last = 1");  // No newline at the end
+        String source = sb.toString();
+
+        Lexer sequential = Lexer.fromSource(source);
+        String expected = stringifyListOfToken(sequential.getAllTokens());
+        Lexer parallel = Lexer.fromSource(source);
+        TokenBuffer tokens = parallel.tokenizeParallel();
+        Assert.assertEquals(expected, stringifyListOfToken(tokens.toTokens()));
+        Assert.assertEquals(sequential, parallel);  // Same index and line number afterwards
+        Assert.assertEquals(Lexer.EOFKIND, parallel.scan());
+    }
+
+    @Test
+    public void testAsciiFastPathMatchesUnicodePath(){
+        String source = "  count1 = (abcdefghijklmnopQRSTUVWXyz9 + 12345678) * 123456789 - 1234567890123\n"
+                + "\t\tx = 007 / 99999999 $ ` [ ] @ { _ ^\r\n"
+                + "                                y = 8\u001F  \u000Bz=0\n\n"
+                + "AZaz09 = 000000001 + 87654321";
+        assertSameTokens(source);
+    }
+
+    @Test
+    public void testAsciiFastPathMatchesAcrossWordBoundaries(){
+        // Lexemes and runs of spaces of every length up to 20, so that they end at every offset in a long
+        StringBuilder sb = new StringBuilder();
+        for (int n = 1; n <= 20; n++) {
+            sb.append(" ".repeat(n)).append("v".repeat(n)).append(" = ").append("7".repeat(n)).append('\n');
+            sb.append("w").append("1".repeat(n)).append("=").append(" ".repeat(n)).append("9".repeat(Math.min(n, 9))).append('\n');
+        }
+        assertSameTokens(sb.toString());
+    }
+
+    @Test
+    public void testIntegerValues(){
+        Lexer lexer = Lexer.fromSource("0 42 12345678 123456789 1234567890");
+        int[] values = {0, 42, 12345678, 123456789, 0};  // Ten digits may not fit, so they are left to the Parser
+        for (int value : values) {
+            Assert.assertEquals(Lexer.INTKIND, lexer.scan());
+            Assert.assertEquals(value, lexer.tokenValue);
+        }
+    }
+
+    @Test
+    public void testNonAsciiInputTakesUnicodePath(){
+        // Letters and digits outside ASCII are still identifiers and integers
+        Lexer lexer = Lexer.fromSource("\u00e9t\u00e9 = \u0661\u0662 + a");
+        int[] kinds = {Lexer.IDKIND, Lexer.ASSMTKIND, Lexer.INTKIND, Lexer.PLUSKIND, Lexer.IDKIND, Lexer.EOFKIND};
+        for (int kind : kinds) {
+            Assert.assertEquals(kind, lexer.scan());
+        }
+        Lexer arabic = Lexer.fromSource("\u0661\u0662");
+        arabic.scan();
+        Assert.assertEquals(12, arabic.tokenValue);
+        Lexer accented = Lexer.fromSource("\u00e9t\u00e9");
+        accented.scan();
+        Assert.assertEquals("\u00e9t\u00e9".hashCode(), accented.tokenValue);
+    }
+
+    // Scans source with the ASCII fast path and with the Unicode path, which a range lexer always takes
+    private static void assertSameTokens(String source) {
+        Lexer fast = Lexer.fromSource(source);
+        Lexer unicode = new Lexer(source, 0, source.length());
+        int lineOffset = fast.lineNumber - unicode.lineNumber;
+        int kind;
+        do {
+            kind = fast.scan();
+            Assert.assertEquals(unicode.scan(), kind);
+            Assert.assertEquals(unicode.tokenStart, fast.tokenStart);
+            Assert.assertEquals(unicode.tokenLength, fast.tokenLength);
+            Assert.assertEquals(unicode.tokenLine + lineOffset, fast.tokenLine);
+            Assert.assertEquals(unicode.tokenValue, fast.tokenValue);
+        } while (kind != Lexer.EOFKIND);
+        Assert.assertEquals(unicode.lineNumber + lineOffset, fast.lineNumber);
+    }
+
     /**
      * Stringify the tokens into String to pass Lexer Test
      * @param tokens ArrayList<Token>
@@ -0,0 +1,63 @@
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.Map;
+
+public class MetricsTest {
+
+    @Test
+    public void testTimerAndSnapshot() {
+        Metrics.reset();
+        Metrics.start(Metrics.Phase.LEX).stop(5);
+        Metrics.addOpcodeEstimate(new int[]{2, 0, 1});
+
+        Assert.assertEquals(1, Metrics.getCount(Metrics.Phase.LEX));
+        Assert.assertEquals(5, Metrics.getItems(Metrics.Phase.LEX));
+        Assert.assertEquals(0, Metrics.getCount(Metrics.Phase.RUN));
+        Map<String, Long> snapshot = Metrics.snapshot();
+        Assert.assertEquals(Long.valueOf(5), snapshot.get("lex.items"));
+        Assert.assertEquals(Long.valueOf(2), snapshot.get("opcodeEstimate.LOAD"));
+        Assert.assertEquals(Long.valueOf(1), snapshot.get("opcodeEstimate.STORE"));
+        Assert.assertEquals(Long.valueOf(0), snapshot.get("opcodeEstimate.POPDIV"));
+    }
+
+    @Test
+    public void testNothingIsRecordedWhenOff() {
+        Assume.assumeFalse("Metrics are on", Metrics.ENABLED);
+        Metrics.reset();
+        Parser parser = new Parser(Lexer.fromSource("a = 1 + 2\nb = a * 3\n").tokenize(), 2);
+        parser.setQuiet(true);
+        Assert.assertTrue(parser.parseProgram());
+        parser.getByteCodeInterpreter().run();
+        parser.getByteCodeInterpreter().runParallel();
+
+        for (Metrics.Phase phase : Metrics.Phase.values()) {
+            Assert.assertEquals(0, Metrics.getCount(phase));
+            Assert.assertEquals(0, Metrics.getItems(phase));
+        }
+    }
+
+    @Test
+    public void testPhasesAreRecorded() {
+        Assume.assumeTrue("Run with -Dinterpreter.metrics=true", Metrics.ENABLED);
+        Metrics.reset();
+        TokenBuffer tokens = Lexer.fromSource("a = 1 + 2\nb = a * (3 - a)\n").tokenize();
+        Parser parser = new Parser(tokens, 2);
+        Assert.assertTrue(parser.parseProgram());
+        ByteCodeInterpreter interpreter = parser.getByteCodeInterpreter();
+        interpreter.run();
+        interpreter.run();
+
+        Assert.assertEquals(1, Metrics.getCount(Metrics.Phase.LEX));
+        Assert.assertEquals(tokens.size(), Metrics.getItems(Metrics.Phase.LEX));
+        Assert.assertEquals(1, Metrics.getCount(Metrics.Phase.PARSE));
+        Assert.assertEquals(tokens.size() - 1, Metrics.getItems(Metrics.Phase.PARSE));  // The EOF is only peeked
+        Assert.assertEquals(2, Metrics.getCount(Metrics.Phase.RUN));
+        Assert.assertEquals(interpreter.getCodeLength(), Metrics.getItems(Metrics.Phase.RUN));
+        Assert.assertEquals(4, Metrics.getEstimatedOpcodeCount(ByteCodeInterpreter.STORE));
+        Assert.assertEquals(2, Metrics.getEstimatedOpcodeCount(ByteCodeInterpreter.POPMULT));
+        Assert.assertTrue(Metrics.getNanos(Metrics.Phase.RUN) > 0);
+        Assert.assertTrue(Metrics.getAllocatedBytes(Metrics.Phase.LEX) > 0);
+    }
+}
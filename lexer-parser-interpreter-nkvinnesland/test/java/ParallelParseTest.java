@@ -0,0 +1,70 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+public class ParallelParseTest {
+
+    @Test
+    public void testSameCodeAndIdTable() {
+        StringBuilder source = new StringBuilder("a = 1\n");
+        for (int i = 0; i < 12000; i++) {
+            // Reads variables from much earlier statements, so from other partitions
+            source.append("v").append(i % 500).append(" = (a + v").append(i % 500).append(") * ")
+                    .append(i).append(" - x / 2\n");
+            if (i % 7 == 0) {
+                source.append("a = a - v").append(i % 300).append("  b").append(i % 1000).append(" = 4 * (a - 1)\n");
+            }
+        }
+        assertSameAsSequential(source.toString(), true);
+    }
+
+    @Test
+    public void testUseBeforeDefinitionIsReported() {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 12000; i++) {
+            source.append("v").append(i).append(" = v").append(Math.max(i - 1, 0)).append(" + 1\n");
+            if (i == 9000) {
+                source.append("w = later + 1\n");
+            }
+        }
+        source.append("later = 2\n");
+        assertSameAsSequential(source.toString(), false);
+    }
+
+    @Test
+    public void testSyntaxErrorIsReported() {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 12000; i++) {
+            source.append("v = v + ").append(i).append(i == 8000 ? " + \n" : "\n");
+        }
+        assertSameAsSequential(source.toString(), false);
+    }
+
+    // Parses source both ways and compares the result, the printed output, the code and the IdTable
+    private static void assertSameAsSequential(String source, boolean valid) {
+        Parser sequential = new Parser(Lexer.fromSource(source).tokenize(), 0);
+        sequential.getIdTable().declareInput("x");
+        String expectedOutput = capture(() -> Assert.assertEquals(valid, sequential.parseProgram()));
+        Parser parallel = new Parser(Lexer.fromSource(source).tokenize(), 0);
+        parallel.getIdTable().declareInput("x");
+        String output = capture(() -> Assert.assertEquals(valid, parallel.parseProgramParallel()));
+
+        Assert.assertEquals(expectedOutput, output);
+        Assert.assertArrayEquals(sequential.getByteCodeInterpreter().getCode(), parallel.getByteCodeInterpreter().getCode());
+        Assert.assertEquals(sequential.getIdTable().toString(), parallel.getIdTable().toString());
+    }
+
+    private static String capture(Runnable parse) {
+        PrintStream out = System.out;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes));
+        try {
+            parse.run();
+        } finally {
+            System.setOut(out);
+        }
+        return bytes.toString();
+    }
+}
@@ -13,7 +13,7 @@ public class ParserTest {
                 "testExpectingIdOrInt2.txt", "testMultiplePlus.txt", "testWhiteSpace.txt",
                 "testWhitespace2.txt", "testImbalancedOperators.txt", "testInvalidCharacters.txt",
                 "testMissingAssignment.txt", "testMissingExpressions.txt", "testMissingOperands.txt",
-                "testMultipleConsecutiveAssignments.txt"
+                "testMultipleConsecutiveAssignments.txt", "testPrecedence.txt"
         };
 
 
@@ -0,0 +1,97 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ProgramCacheTest {
+
+    @Test
+    public void testHitSkipsCompilation(){
+        ProgramCache cache = new ProgramCache(10);
+        Program first = cache.getOrCompile("a = 1 + 2\nb = a * 3\n");
+        Program second = cache.getOrCompile("a = 1 + 2\nb = a * 3\n");
+
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+
+        ByteCodeInterpreter interpreter = second.newInterpreter();
+        interpreter.run();
+        Assert.assertEquals(Arrays.asList(3, 9), interpreter.getMemory());
+        Assert.assertEquals(1, second.getAddress("b"));
+    }
+
+    @Test
+    public void testMissPrintsNothing(){
+        ProgramCache cache = new ProgramCache(10);
+        PrintStream out = System.out;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes));
+        try {
+            cache.getOrCompile("a = 1 + 2\nb = a * 3\n");
+            try {
+                cache.getOrCompile("a = 1\nb = (a +\n2\n");
+                Assert.fail("Expected an invalid program");
+            } catch (IllegalArgumentException e) {
+                Assert.assertEquals("Error: Expecting closing parenthesis, line 4", e.getMessage());
+            }
+        } finally {
+            System.setOut(out);
+        }
+        Assert.assertEquals("", bytes.toString());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted(){
+        ProgramCache cache = new ProgramCache(2);
+        Program a = cache.getOrCompile("a = 1\n");
+        cache.getOrCompile("b = 2\n");
+        cache.getOrCompile("a = 1\n");  // a is now more recent than b
+        cache.getOrCompile("c = 3\n");
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(1, cache.getEvictions());
+        Assert.assertSame(a, cache.getOrCompile("a = 1\n"));
+        cache.getOrCompile("b = 2\n");
+        Assert.assertEquals(4, cache.getMisses());  // b had to be compiled again
+    }
+
+    @Test
+    public void testCodeSizeBound(){
+        ProgramCache cache = new ProgramCache(100, 10);
+        cache.getOrCompile("a = 1\n");  // 4 ints
+        cache.getOrCompile("b = 2\n");
+        cache.getOrCompile("c = 3\n");
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(8, cache.getCodeSize());
+    }
+
+    @Test
+    public void testConcurrentUse() throws Exception {
+        ProgramCache cache = new ProgramCache(4);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            int n = i % 6;
+            results.add(pool.submit(() -> {
+                ByteCodeInterpreter interpreter = cache.getOrCompile("x = " + n + " * 2\n").newInterpreter();
+                interpreter.run();
+                return interpreter.getMemoryValue(0);
+            }));
+        }
+        for (int i = 0; i < 400; i++) {
+            Assert.assertEquals(Integer.valueOf(i % 6 * 2), results.get(i).get());
+        }
+        pool.shutdown();
+        Assert.assertEquals(400, cache.getHits() + cache.getMisses());
+        Assert.assertTrue(cache.size() <= 4);
+    }
+}
@@ -0,0 +1,76 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ProgramExecutorTest {
+
+    @Test
+    public void testContextMatchesTheInterpreter() throws IOException {
+        for (long seed = 1; seed <= 10; seed++) {
+            Path file = Files.createTempFile("executor", ".txt");
+            new ProgramGenerator(seed, 200, 10, 5, "+-*/").writeTo(file);
+            Parser parser = new Parser(new Lexer(file.toString()));
+            Assert.assertTrue(parser.parseProgram());
+            Program program = Program.of(parser.getByteCodeInterpreter(), parser.getIdTable());
+
+            // Twice, since memory and the accumulator carry over between runs
+            ExecutionContext context = program.newContext();
+            for (int run = 0; run < 2; run++) {
+                parser.runProgram();
+                program.execute(context);
+                for (int address = 0; address < program.getMemorySize(); address++) {
+                    Assert.assertEquals(parser.getByteCodeInterpreter().getMemoryValue(address), context.getMemoryValue(address));
+                }
+            }
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testManyConcurrentExecutions() throws Exception {
+        Program program = Program.compile("y = x * x - 3\nz = (y + x) / 2\n", "x");
+        int x = program.getAddress("x");
+        int z = program.getAddress("z");
+        List<Future<Integer>> results = new ArrayList<>();
+        try (ProgramExecutor executor = new ProgramExecutor()) {
+            for (int i = 0; i < 5000; i++) {
+                int input = i;
+                results.add(executor.submit(program, context -> context.setMemoryValue(x, input),
+                        context -> context.getMemoryValue(z)));
+            }
+            for (int i = 0; i < 5000; i++) {
+                Assert.assertEquals(Integer.valueOf((i * i - 3 + i) / 2), results.get(i).get());
+            }
+        }
+    }
+
+    @Test
+    public void testContextsAreReused() throws Exception {
+        Program program = Program.compile("a = 1\nb = a + 2\n");
+        try (ProgramExecutor executor = new ProgramExecutor(Executors.newFixedThreadPool(4), 16)) {
+            for (int i = 0; i < 1000; i++) {
+                Assert.assertEquals(Integer.valueOf(3), executor.submit(program, context -> context.getMemoryValue(1)).get());
+            }
+            Assert.assertEquals(1, executor.getContextsCreated());  // One execution at a time
+        }
+    }
+
+    @Test
+    public void testReusedContextIsNotQuiet() throws Exception {
+        Program program = Program.compile("a = 1 / 0\n");
+        try (ProgramExecutor executor = new ProgramExecutor(Executors.newSingleThreadExecutor(), 16)) {
+            Assert.assertEquals(Integer.valueOf(1), executor.submit(program, context -> context.setQuiet(true),
+                    context -> context.getDiagnostics().size()).get());
+            // The next caller gets the same context, and its error is printed, not collected
+            Assert.assertEquals(Integer.valueOf(0), executor.submit(program, context -> context.getDiagnostics().size()).get());
+            Assert.assertEquals(1, executor.getContextsCreated());
+        }
+    }
+}
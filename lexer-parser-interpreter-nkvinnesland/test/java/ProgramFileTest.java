@@ -0,0 +1,97 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class ProgramFileTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Parser parser = new Parser(new Lexer("testPrecedence.txt"));
+        Assert.assertTrue(parser.parseProgram());
+        Program program = Program.of(parser.getByteCodeInterpreter(), parser.getIdTable());
+        parser.getByteCodeInterpreter().generate(ByteCodeInterpreter.LOADI, -70000);  // Not part of program
+
+        Path file = Files.createTempFile("program", ProgramFile.EXTENSION);
+        ProgramFile.write(program, file);
+        Program loaded = ProgramFile.read(file);
+
+        Assert.assertArrayEquals(program.getCode(), loaded.getCode());
+        Assert.assertArrayEquals(program.getIdentifiers(), loaded.getIdentifiers());
+        Assert.assertEquals(program.getMemorySize(), loaded.getMemorySize());
+        ByteCodeInterpreter interpreter = loaded.newInterpreter();
+        interpreter.run();
+        Assert.assertEquals(Arrays.asList(7, 1, 15, 136, 15, 4, -3, 7), interpreter.getMemory());
+
+        // One byte per command and per small operand, instead of two ints
+        Assert.assertTrue(Files.size(file) < program.getCodeLength() * 2);
+        Files.delete(file);
+    }
+
+    @Test
+    public void testLargeAndNegativeOperands() throws IOException {
+        int[] code = {ByteCodeInterpreter.LOADI, Integer.MIN_VALUE, ByteCodeInterpreter.SUBI, -1,
+                ByteCodeInterpreter.LOADI, Integer.MAX_VALUE, ByteCodeInterpreter.STORE, 0};
+        Program program = new Program(code, new String[]{"x"}, 1);
+        Program decoded = ProgramFile.decode(java.nio.ByteBuffer.wrap(ProgramFile.encode(program)));
+        Assert.assertArrayEquals(code, decoded.getCode());
+    }
+
+    @Test
+    public void testCorruptFileIsRejected() throws IOException {
+        byte[] bytes = ProgramFile.encode(Program.compile("a = 1 + 2\n"));
+        bytes[bytes.length - 6] ^= 1;
+        try {
+            ProgramFile.decode(java.nio.ByteBuffer.wrap(bytes));
+            Assert.fail("Expected a checksum error");
+        } catch (IOException e) {
+            Assert.assertEquals("Program file checksum mismatch", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testVersionMismatchRecompiles() throws IOException {
+        Path source = Files.createTempFile("program", ".txt");
+        Files.write(source, "a = 4\nb = a * a\n".getBytes(StandardCharsets.UTF_8));
+        Path file = ProgramFile.binaryPathFor(source);
+        byte[] bytes = ProgramFile.encode(Program.compile("a = 1\n"));
+        bytes[5] = (byte) (ProgramFile.FORMAT_VERSION + 1);
+        Files.write(file, bytes);
+
+        try {
+            ProgramFile.read(file);
+            Assert.fail("Expected a version mismatch");
+        } catch (ProgramFile.VersionMismatchException e) {
+            // Expected
+        }
+        Program program = ProgramFile.load(file, source);
+        ByteCodeInterpreter interpreter = program.newInterpreter();
+        interpreter.run();
+        Assert.assertEquals(Arrays.asList(4, 16), interpreter.getMemory());
+        Assert.assertArrayEquals(program.getCode(), ProgramFile.read(file).getCode());  // Rewritten
+        Files.delete(file);
+        Files.delete(source);
+    }
+
+    @Test
+    public void testEditedSourceRecompiles() throws IOException {
+        Path source = Files.createTempFile("program", ".txt");
+        Files.write(source, "a = 4\n".getBytes(StandardCharsets.UTF_8));
+        Path file = ProgramFile.binaryPathFor(source);
+        Files.deleteIfExists(file);
+        Program first = ProgramFile.load(file, source);
+        Assert.assertArrayEquals(first.getCode(), ProgramFile.load(file, source).getCode());  // Up to date
+
+        Files.write(source, "a = 4\nb = a * 3\n".getBytes(StandardCharsets.UTF_8));
+        ByteCodeInterpreter interpreter = ProgramFile.load(file, source).newInterpreter();
+        interpreter.run();
+        Assert.assertEquals(Arrays.asList(4, 12), interpreter.getMemory());
+        Assert.assertEquals(2, ProgramFile.read(file).getMemorySize());  // Rewritten
+        Files.delete(file);
+        Files.delete(source);
+    }
+}
@@ -0,0 +1,101 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutionException;
+
+public class ProgramSchedulerTest {
+
+    @Test
+    public void testResultsMatchADirectRun() throws Exception {
+        Program program = Program.compile("a = 6\nb = a * 7 - (a + 1) / 2\nc = b - a\n");
+        ExecutionContext expected = program.newContext();
+        program.execute(expected);
+
+        try (ProgramScheduler scheduler = new ProgramScheduler(2, 3)) {
+            ProgramScheduler.Task task = scheduler.submit("tenant", program);
+            ExecutionContext context = task.getResult().get();
+            for (int address = 0; address < program.getMemorySize(); address++) {
+                Assert.assertEquals(expected.getMemoryValue(address), context.getMemoryValue(address));
+            }
+            Assert.assertEquals(program.getCodeLength() / 2, task.getInstructions());
+            Assert.assertTrue(task.getSlices() > 1);
+            Assert.assertTrue(task.getLatencyNanos() >= task.getQueueWaitNanos());
+        }
+    }
+
+    @Test
+    public void testLongProgramDoesNotBlockShortOnes() throws Exception {
+        Program big = Program.compile(repeat("a = a + 1\n", 50000), "a");
+        Program small = Program.compile("b = 2\n");
+        try (ProgramScheduler scheduler = new ProgramScheduler(1, 100, true)) {
+            // Both are queued before the worker starts, so the big one cannot finish first by itself
+            ProgramScheduler.Task bigTask = scheduler.submit("batch", big);
+            ProgramScheduler.Task smallTask = scheduler.submit("interactive", small);
+            scheduler.start();
+            smallTask.getResult().get();
+            Assert.assertEquals(50000, bigTask.getResult().get().getMemoryValue(0));
+            Assert.assertTrue(smallTask.getFinishedNanos() < bigTask.getFinishedNanos());
+            Assert.assertTrue(scheduler.getLatencyPercentile("interactive", 99) < scheduler.getLatencyPercentile("batch", 99));
+        }
+    }
+
+    @Test
+    public void testWeightsShareTheWorkers() throws Exception {
+        Program program = Program.compile(repeat("a = a + 1\n", 100000), "a");
+        try (ProgramScheduler scheduler = new ProgramScheduler(1, 1000, true)) {
+            scheduler.setTenantWeight("heavy", 3);
+            // Queue both before the worker can take a slice
+            ProgramScheduler.Task light = scheduler.submit("light", program);
+            ProgramScheduler.Task heavy = scheduler.submit("heavy", program);
+            Assert.assertEquals(1, scheduler.getQueueLength("light"));
+            scheduler.start();
+            light.getResult().get();
+            heavy.getResult().get();
+            // Started later but got three slices for every one of light's
+            Assert.assertTrue(heavy.getFinishedNanos() < light.getFinishedNanos());
+        }
+    }
+
+    @Test
+    public void testInstructionBudget() throws Exception {
+        Program program = Program.compile(repeat("a = a + 1\n", 100), "a");
+        try (ProgramScheduler scheduler = new ProgramScheduler(1, 7)) {
+            ProgramScheduler.Task task = scheduler.submit("tenant", program, null, 250);
+            try {
+                task.getResult().get();
+                Assert.fail("Expected the budget to run out");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof ProgramScheduler.BudgetExceededException);
+            }
+            Assert.assertEquals(250, task.getInstructions());
+            // 300 instructions fit in a budget of 400
+            Assert.assertEquals(100, scheduler.submit("tenant", program, null, 400).getResult().get().getMemoryValue(0));
+        }
+    }
+
+    @Test
+    public void testFailingProgramDoesNotStopTheWorker() throws Exception {
+        Program program = Program.compile("a = 1\nb = a + 2\n");
+        try (ProgramScheduler scheduler = new ProgramScheduler(1)) {
+            // A corrupt pc makes resume throw on the worker thread
+            ProgramScheduler.Task failing = scheduler.submit("tenant", program, context -> context.pc = -2, 0);
+            ProgramScheduler.Task good = scheduler.submit("tenant", program);
+            try {
+                failing.getResult().get();
+                Assert.fail("Expected the program to fail");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof ArrayIndexOutOfBoundsException);
+            }
+            Assert.assertEquals(3, good.getResult().get().getMemoryValue(1));
+            Assert.assertTrue(failing.getLatencyNanos() >= 0);
+        }
+    }
+
+    private static String repeat(String line, int times) {
+        StringBuilder program = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            program.append(line);
+        }
+        return program.toString();
+    }
+}
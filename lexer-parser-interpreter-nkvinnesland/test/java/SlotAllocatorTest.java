@@ -0,0 +1,51 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class SlotAllocatorTest {
+
+    @Test
+    public void testTemporariesShareSlots(){
+        Parser parser = new Parser(new Lexer("testSlotReuse.txt"));
+        Assert.assertTrue(parser.parseProgram());
+        IdTable idTable = parser.getIdTable();
+        idTable.markOutput("out1");
+        idTable.markOutput("out2");
+
+        SlotAllocator allocator = new SlotAllocator();
+        Assert.assertEquals(2, allocator.allocate(parser.getByteCodeInterpreter(), idTable));
+        Assert.assertEquals(2, parser.getByteCodeInterpreter().getMemorySize());
+        parser.runProgram();
+
+        Assert.assertEquals(11, idTable.getValue("out1", parser.getByteCodeInterpreter()));
+        Assert.assertEquals(66, idTable.getValue("out2", parser.getByteCodeInterpreter()));
+        Assert.assertEquals(-1, idTable.getOutputAddress("t1"));
+    }
+
+    @Test
+    public void testEveryVariableIsAnOutputByDefault() throws IOException {
+        for (long seed = 1; seed <= 10; seed++) {
+            Path file = Files.createTempFile("slots", ".txt");
+            new ProgramGenerator(seed, 300, 25, 4, "+-*/").writeTo(file);
+
+            Parser plain = new Parser(new Lexer(file.toString()));
+            Assert.assertTrue(plain.parseProgram());
+            plain.runProgram();
+
+            Parser allocated = new Parser(new Lexer(file.toString()));
+            Assert.assertTrue(allocated.parseProgram());
+            int size = new SlotAllocator().allocate(allocated.getByteCodeInterpreter(), allocated.getIdTable());
+            Assert.assertTrue(size <= plain.getIdTable().size());
+            allocated.runProgram();
+
+            for (String id : plain.getIdTable().getIdentifiers()) {
+                Assert.assertEquals(plain.getIdTable().getValue(id, plain.getByteCodeInterpreter()),
+                        allocated.getIdTable().getValue(id, allocated.getByteCodeInterpreter()));
+            }
+            Files.delete(file);
+        }
+    }
+}